@@ -15,4 +15,6 @@ module ru.ifmo.rain.korobkov {
     requires java.management;
 
     exports ru.ifmo.rain.korobkov.bank to java.rmi;
+    exports ru.ifmo.rain.korobkov.concurrent to java.management;
+    exports ru.ifmo.rain.korobkov.crawler to java.management;
 }
\ No newline at end of file
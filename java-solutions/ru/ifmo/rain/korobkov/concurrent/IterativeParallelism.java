@@ -3,10 +3,14 @@ package ru.ifmo.rain.korobkov.concurrent;
 import info.kgeorgiy.java.advanced.concurrent.AdvancedIP;
 import info.kgeorgiy.java.advanced.mapper.ParallelMapper;
 
+import java.io.IOException;
 import java.util.*;
-import java.util.function.Function;
-import java.util.function.Predicate;
-import java.util.stream.Collectors;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.*;
 import java.util.stream.Stream;
 
 
@@ -16,16 +20,46 @@ import java.util.stream.Stream;
  * @see info.kgeorgiy.java.advanced.concurrent.AdvancedIP
  */
 public class IterativeParallelism implements AdvancedIP {
+    private static final int JOIN_WINDOW = 1 << 16;
+
     private final ParallelMapper mapper;
 
+    /**
+     * Creates instance that starts new platform thread for every part.
+     */
     public IterativeParallelism() {
-        mapper = null;
+        this(Thread::new);
     }
 
+    /**
+     * Creates instance that runs parts on the given mapper.
+     *
+     * @param mapper mapper to run parts on.
+     */
     public IterativeParallelism(final ParallelMapper mapper) {
         this.mapper = mapper;
     }
 
+    /**
+     * Creates instance that starts new thread for every part.
+     * Pass {@code Thread.ofVirtual().factory()} to run each part on its own virtual thread.
+     *
+     * @param factory factory of part threads.
+     */
+    public IterativeParallelism(final ThreadFactory factory) {
+        this.mapper = new ThreadPerPartMapper(factory);
+    }
+
+    /**
+     * Creates instance that runs parts on the shared pool.
+     * The pool is not shut down by this instance.
+     *
+     * @param pool pool to run parts on.
+     */
+    public IterativeParallelism(final ExecutorService pool) {
+        this.mapper = new ExecutorMapper(pool);
+    }
+
     /**
      * Join values to string.
      *
@@ -36,9 +70,58 @@ public class IterativeParallelism implements AdvancedIP {
      */
     @Override
     public String join(final int threads, final List<?> values) throws InterruptedException {
-        return getValueByFunction(threads, values,
-                stream -> stream.map(Object::toString).collect(Collectors.joining()),
-                stream -> stream.collect(Collectors.joining()));
+        final StringBuilder[] parts = joinParts(threads, values);
+        long length = 0;
+        for (final StringBuilder part : parts) {
+            length += part.length();
+        }
+        if (length > Integer.MAX_VALUE) {
+            throw new OutOfMemoryError("Joined string is too long: " + length);
+        }
+        final StringBuilder builder = new StringBuilder((int) length);
+        for (int i = 0; i < parts.length; i++) {
+            builder.append(parts[i]);
+            parts[i] = null;
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Join values to the given output.
+     * Values are joined in parallel by windows of {@link #JOIN_WINDOW} values per thread,
+     * so only one window is kept in memory.
+     *
+     * @param threads number of concurrent threads.
+     * @param values  values to join.
+     * @param out     output to append results of {@link #toString()} call on each value to.
+     * @throws InterruptedException if threads were interrupted.
+     * @throws IOException          if output failed.
+     */
+    public void join(final int threads, final List<?> values, final Appendable out) throws InterruptedException, IOException {
+        final int window = Math.max(1, threads) * JOIN_WINDOW;
+        for (int from = 0; from < values.size(); from += window) {
+            final StringBuilder[] parts = joinParts(threads, values.subList(from, Math.min(values.size(), from + window)));
+            for (int i = 0; i < parts.length; i++) {
+                out.append(parts[i]);
+                parts[i] = null;
+            }
+        }
+    }
+
+    /**
+     * Joins results of {@link #toString()} call on each value of every part into one builder per part,
+     * so no per-value strings are kept.
+     *
+     * @return builders of parts in order of values.
+     */
+    private StringBuilder[] joinParts(final int threads, final List<?> values) throws InterruptedException {
+        return mapRanges(threads, values.size(), (from, to) -> {
+            final StringBuilder part = new StringBuilder();
+            for (final Object value : values.subList(from, to)) {
+                part.append(value.toString());
+            }
+            return part;
+        }).toArray(new StringBuilder[0]);
     }
 
     /**
@@ -48,13 +131,123 @@ public class IterativeParallelism implements AdvancedIP {
      * @param values    values to filter.
      * @param predicate filter predicate.
      * @return list of values satisfying given predicated. Order of values is preserved.
+     *         The list is mutable.
      * @throws InterruptedException if threads were interrupted.
      */
     @Override
     public <T> List<T> filter(final int threads, final List<? extends T> values, final Predicate<? super T> predicate) throws InterruptedException {
-        return getValueByFunction(threads, values,
-                stream -> collectStreamToList(stream.filter(predicate)),
-                this::collectListFunction);
+        final List<Marks> marks = mapRanges(threads, values.size(), (from, to) -> {
+            final BitSet bits = new BitSet(to - from);
+            int i = 0;
+            for (final T value : values.subList(from, to)) {
+                if (predicate.test(value)) {
+                    bits.set(i);
+                }
+                i++;
+            }
+            return new Marks(from, to, bits);
+        });
+
+        final List<Integer> offsets = new ArrayList<>(marks.size());
+        int total = 0;
+        for (final Marks part : marks) {
+            offsets.add(total);
+            total += part.bits.cardinality();
+        }
+
+        final Object[] result = new Object[total];
+        mapper.map(part -> {
+            final Marks partMarks = marks.get(part);
+            int position = offsets.get(part);
+            int i = 0;
+            for (final T value : values.subList(partMarks.from, partMarks.to)) {
+                if (partMarks.bits.get(i++)) {
+                    result[position++] = value;
+                }
+            }
+            return null;
+        }, rangeIndices(marks.size()));
+        return asList(result);
+    }
+
+    /**
+     * Values of the part {@code [from, to)} that satisfy predicate.
+     */
+    private static class Marks {
+        private final int from;
+        private final int to;
+        private final BitSet bits;
+
+        Marks(final int from, final int to, final BitSet bits) {
+            this.from = from;
+            this.to = to;
+            this.bits = bits;
+        }
+    }
+
+    private static List<Integer> rangeIndices(final int parts) {
+        final List<Integer> indices = new ArrayList<>(parts);
+        for (int i = 0; i < parts; i++) {
+            indices.add(i);
+        }
+        return indices;
+    }
+
+    private static <T> List<T> asList(final Object[] values) {
+        return new ArrayResult<>(values);
+    }
+
+    /**
+     * Mutable list that takes over the result array without copying it.
+     */
+    private static class ArrayResult<T> extends AbstractList<T> implements RandomAccess {
+        private Object[] elements;
+        private int size;
+
+        ArrayResult(final Object[] elements) {
+            this.elements = elements;
+            this.size = elements.length;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T get(final int index) {
+            Objects.checkIndex(index, size);
+            return (T) elements[index];
+        }
+
+        @Override
+        public T set(final int index, final T element) {
+            final T previous = get(index);
+            elements[index] = element;
+            return previous;
+        }
+
+        @Override
+        public void add(final int index, final T element) {
+            Objects.checkIndex(index, size + 1);
+            if (size == elements.length) {
+                elements = Arrays.copyOf(elements, Math.max(8, size + (size >> 1)));
+            }
+            System.arraycopy(elements, index, elements, index + 1, size - index);
+            elements[index] = element;
+            size++;
+            modCount++;
+        }
+
+        @Override
+        public T remove(final int index) {
+            final T previous = get(index);
+            System.arraycopy(elements, index + 1, elements, index, size - index - 1);
+            elements[--size] = null;
+            modCount++;
+            return previous;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
     }
 
     /**
@@ -63,59 +256,116 @@ public class IterativeParallelism implements AdvancedIP {
      * @param threads number of concurrent threads.
      * @param values  values to filter.
      * @param f       mapper function.
-     * @return list of values mapped by given function.
+     * @return list of values mapped by given function. The list is mutable.
      * @throws InterruptedException if threads were interrupted.
      */
     @Override
     public <T, U> List<U> map(final int threads, final List<? extends T> values, final Function<? super T, ? extends U> f) throws InterruptedException {
-        return getValueByFunction(threads, values,
-                stream -> collectStreamToList(stream.map(f)),
-                this::collectListFunction);
-    }
-
-    private <T> List<T> collectStreamToList(final Stream<? extends T> stream) {
-        return stream.collect(Collectors.toList());
-    }
-
-    private <T> List<T> collectListFunction(final Stream<? extends List<T>> stream) {
-        return stream.flatMap(Collection::stream).collect(Collectors.toList());
+        final Object[] result = new Object[values.size()];
+        mapRanges(threads, values.size(), (from, to) -> {
+            int i = from;
+            for (final T value : values.subList(from, to)) {
+                result[i++] = f.apply(value);
+            }
+            return null;
+        });
+        return asList(result);
     }
 
-    private <T, R> R getValueByFunction(int threads, final List<? extends T> values,
+    private <T, R> R getValueByFunction(final int threads, final List<? extends T> values,
                                         final Function<Stream<? extends T>, R> function,
                                         final Function<Stream<R>, R> collector) throws InterruptedException {
-        threads = Math.min(threads, values.size());
-        final List<Stream<? extends T>> parts = getParts(values, threads);
-        final List<R> result = mapper == null
-                ? map(threads, function, parts)
-                : mapper.map(function, parts);
+        final List<R> result = mapRanges(threads, values.size(),
+                (from, to) -> function.apply(values.subList(from, to).stream()));
         return collector.apply(result.stream());
     }
 
-    private <T, R> List<R> map(final int threads, final Function<Stream<? extends T>, R> function, final List<Stream<? extends T>> parts) throws InterruptedException {
-        final List<R> result;
-        result = new ArrayList<>(Collections.nCopies(threads, null));
-        final List<Thread> workers = new ArrayList<>();
-        for (int i = 0; i < threads; i++) {
-            final int finalI = i;
-            final Thread thread = new Thread(() -> result.set(finalI, function.apply(parts.get(finalI))));
-            workers.add(thread);
-            thread.start();
-        }
-        waitThreads(workers, true);
-        return result;
+    /**
+     * Function of index range {@code [from, to)}.
+     */
+    @FunctionalInterface
+    private interface RangeFunction<R> {
+        R apply(int from, int to);
     }
 
-    private <T> List<Stream<? extends T>> getParts(final List<? extends T> values, final int threads) {
-        final int block = values.size() / threads;
-        final int add = values.size() % threads;
-        final List<Stream<? extends T>> parts = new ArrayList<>(threads);
-        for (int i = 0; i * block + Math.min(i, add) < values.size(); i++) {
+    /**
+     * Splits indices {@code [0, size)} into at most {@code threads} contiguous parts of almost equal size
+     * and applies {@code function} to every part in parallel.
+     *
+     * @return results for parts in order of indices.
+     */
+    private <R> List<R> mapRanges(final int threads, final int size, final RangeFunction<R> function) throws InterruptedException {
+        final int parts = Math.max(1, Math.min(threads, size));
+        final int block = size / parts;
+        final int add = size % parts;
+        final List<int[]> ranges = new ArrayList<>(parts);
+        for (int i = 0; i < parts; i++) {
             final int l = i * block + Math.min(i, add);
             final int r = l + block + (i < add ? 1 : 0);
-            parts.add(values.subList(l, r).stream());
+            ranges.add(new int[]{l, r});
+        }
+        return mapper.map(range -> function.apply(range[0], range[1]), ranges);
+    }
+
+    private static class ThreadPerPartMapper implements ParallelMapper {
+        private final ThreadFactory factory;
+
+        ThreadPerPartMapper(final ThreadFactory factory) {
+            this.factory = factory;
+        }
+
+        @Override
+        public <T, R> List<R> map(final Function<? super T, ? extends R> f, final List<? extends T> args) throws InterruptedException {
+            final List<R> result = new ArrayList<>(Collections.nCopies(args.size(), null));
+            final List<Thread> workers = new ArrayList<>();
+            for (int i = 0; i < args.size(); i++) {
+                final int finalI = i;
+                final Thread thread = factory.newThread(() -> result.set(finalI, f.apply(args.get(finalI))));
+                workers.add(thread);
+                thread.start();
+            }
+            waitThreads(workers, true);
+            return result;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static class ExecutorMapper implements ParallelMapper {
+        private final ExecutorService pool;
+
+        ExecutorMapper(final ExecutorService pool) {
+            this.pool = pool;
+        }
+
+        @Override
+        public <T, R> List<R> map(final Function<? super T, ? extends R> f, final List<? extends T> args) throws InterruptedException {
+            final List<Future<R>> futures = new ArrayList<>(args.size());
+            for (final T arg : args) {
+                futures.add(pool.submit(() -> f.apply(arg)));
+            }
+            final List<R> result = new ArrayList<>(args.size());
+            try {
+                for (final Future<R> future : futures) {
+                    result.add(future.get());
+                }
+            } catch (final InterruptedException e) {
+                futures.forEach(future -> future.cancel(true));
+                throw e;
+            } catch (final ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw new IllegalStateException(e.getCause());
+            }
+            return result;
+        }
+
+        @Override
+        public void close() {
         }
-        return parts;
     }
 
     static void waitThreads(final List<Thread> workers, final boolean needTerminate) throws InterruptedException {
@@ -162,6 +412,111 @@ public class IterativeParallelism implements AdvancedIP {
         return stream.max(comparator).orElse(null);
     }
 
+    /**
+     * Returns {@code k} greatest values.
+     * Every part collects its {@code k} greatest values in a bounded heap, then heaps are merged.
+     *
+     * @param threads    number or concurrent threads.
+     * @param values     values to get greatest of.
+     * @param k          number of values to return.
+     * @param comparator value comparator.
+     * @param <T>        value type
+     * @return at most {@code k} greatest values in descending order.
+     * @throws InterruptedException if threads were interrupted.
+     */
+    public <T> List<T> topK(final int threads, final List<? extends T> values, final int k, final Comparator<? super T> comparator) throws InterruptedException {
+        if (k < 0) {
+            throw new IllegalArgumentException("Negative number of values: " + k);
+        }
+        if (k == 0) {
+            return new ArrayList<>();
+        }
+        final List<PriorityQueue<T>> heaps = mapRanges(threads, values.size(), (from, to) -> {
+            final PriorityQueue<T> heap = new PriorityQueue<>(Math.min(k, to - from) + 1, comparator);
+            for (final T value : values.subList(from, to)) {
+                offer(heap, value, k);
+            }
+            return heap;
+        });
+        final PriorityQueue<T> top = new PriorityQueue<>(Math.min(k, values.size()) + 1, comparator);
+        for (final PriorityQueue<T> heap : heaps) {
+            for (final T value : heap) {
+                offer(top, value, k);
+            }
+        }
+        final List<T> result = new ArrayList<>(top);
+        result.sort(Collections.reverseOrder(comparator));
+        return result;
+    }
+
+    /**
+     * Adds value to min-heap keeping at most {@code k} greatest values.
+     */
+    private static <T> void offer(final PriorityQueue<T> heap, final T value, final int k) {
+        if (heap.size() < k) {
+            heap.add(value);
+        } else if (heap.comparator().compare(value, heap.peek()) > 0) {
+            heap.poll();
+            heap.add(value);
+        }
+    }
+
+    /**
+     * Sorts values. Sort is stable.
+     * Every part is sorted separately, then adjacent sorted runs are merged pairwise in parallel.
+     *
+     * @param threads    number or concurrent threads.
+     * @param values     values to sort.
+     * @param comparator value comparator.
+     * @param <T>        value type
+     * @return sorted values.
+     * @throws InterruptedException if threads were interrupted.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> List<T> sort(final int threads, final List<? extends T> values, final Comparator<? super T> comparator) throws InterruptedException {
+        Object[] source = values.toArray();
+        Object[] target = new Object[source.length];
+        final Object[] sorted = source;
+        List<int[]> runs = mapRanges(threads, source.length, (from, to) -> {
+            Arrays.sort((T[]) sorted, from, to, comparator);
+            return new int[]{from, to};
+        });
+        while (runs.size() > 1) {
+            final List<int[]> current = runs;
+            final Object[] from = source;
+            final Object[] to = target;
+            final List<int[]> merged = mapper.map(pair -> {
+                final int[] left = current.get(2 * pair);
+                if (2 * pair + 1 == current.size()) {
+                    System.arraycopy(from, left[0], to, left[0], left[1] - left[0]);
+                    return left;
+                }
+                final int[] right = current.get(2 * pair + 1);
+                merge(from, to, left[0], left[1], right[1], (Comparator<Object>) comparator);
+                return new int[]{left[0], right[1]};
+            }, rangeIndices((current.size() + 1) / 2));
+            runs = merged;
+            source = to;
+            target = from;
+        }
+        return asList(source);
+    }
+
+    /**
+     * Merges sorted runs {@code [from, middle)} and {@code [middle, to)} of {@code source} into the same indices of {@code target}.
+     */
+    private static void merge(final Object[] source, final Object[] target, final int from, final int middle, final int to,
+                              final Comparator<Object> comparator) {
+        int i = from;
+        int j = middle;
+        int k = from;
+        while (i < middle && j < to) {
+            target[k++] = comparator.compare(source[j], source[i]) < 0 ? source[j++] : source[i++];
+        }
+        System.arraycopy(source, i, target, k, middle - i);
+        System.arraycopy(source, j, target, k + middle - i, to - j);
+    }
+
     /**
      * Computes the minimum value
      *
@@ -188,10 +543,23 @@ public class IterativeParallelism implements AdvancedIP {
      */
     @Override
     public <T> boolean any(final int threads, final List<? extends T> values, final Predicate<? super T> predicate) throws InterruptedException {
-        return getValueByFunction(threads, values, stream -> stream.anyMatch(predicate),
+        final AtomicBoolean found = new AtomicBoolean();
+        return getValueByFunction(threads, values, stream -> anyMatch(stream, predicate, found),
                 stream -> stream.anyMatch(Boolean::booleanValue));
     }
 
+    /**
+     * Tests part values until a match is found in this or any other part sharing the {@code found} flag.
+     */
+    private static <T> boolean anyMatch(final Stream<? extends T> stream, final Predicate<? super T> predicate,
+                                        final AtomicBoolean found) {
+        if (stream.takeWhile(value -> !found.get()).anyMatch(predicate)) {
+            found.set(true);
+            return true;
+        }
+        return false;
+    }
+
     /**
      * Returns whether all values satisfies predicate.
      *
@@ -239,4 +607,292 @@ public class IterativeParallelism implements AdvancedIP {
                         monoid.getOperator()),
                 rStream -> rStream.reduce(monoid.getIdentity(), monoid.getOperator()));
     }
+
+    /**
+     * Monoid over {@code int} values.
+     */
+    public static class IntMonoid {
+        private final int identity;
+        private final IntBinaryOperator operator;
+
+        public IntMonoid(final int identity, final IntBinaryOperator operator) {
+            this.identity = identity;
+            this.operator = operator;
+        }
+
+        public int getIdentity() {
+            return identity;
+        }
+
+        public IntBinaryOperator getOperator() {
+            return operator;
+        }
+    }
+
+    /**
+     * Monoid over {@code long} values.
+     */
+    public static class LongMonoid {
+        private final long identity;
+        private final LongBinaryOperator operator;
+
+        public LongMonoid(final long identity, final LongBinaryOperator operator) {
+            this.identity = identity;
+            this.operator = operator;
+        }
+
+        public long getIdentity() {
+            return identity;
+        }
+
+        public LongBinaryOperator getOperator() {
+            return operator;
+        }
+    }
+
+    /**
+     * Monoid over {@code double} values.
+     */
+    public static class DoubleMonoid {
+        private final double identity;
+        private final DoubleBinaryOperator operator;
+
+        public DoubleMonoid(final double identity, final DoubleBinaryOperator operator) {
+            this.identity = identity;
+            this.operator = operator;
+        }
+
+        public double getIdentity() {
+            return identity;
+        }
+
+        public DoubleBinaryOperator getOperator() {
+            return operator;
+        }
+    }
+
+    /**
+     * Maps and reduces {@code int} values using monoid without boxing.
+     *
+     * @param threads number of concurrent threads.
+     * @param values  values to reduce.
+     * @param lift    mapping function.
+     * @param monoid  monoid to use.
+     * @return values reduced by provided monoid or {@link IntMonoid#getIdentity() identity} if not values specified.
+     * @throws InterruptedException if threads were interrupted
+     */
+    public int mapReduce(final int threads, final int[] values, final IntUnaryOperator lift, final IntMonoid monoid) throws InterruptedException {
+        final IntBinaryOperator operator = monoid.getOperator();
+        final List<Integer> partial = mapRanges(threads, values.length, (from, to) -> {
+            int result = monoid.getIdentity();
+            for (int i = from; i < to; i++) {
+                result = operator.applyAsInt(result, lift.applyAsInt(values[i]));
+            }
+            return result;
+        });
+        int result = monoid.getIdentity();
+        for (final int value : partial) {
+            result = operator.applyAsInt(result, value);
+        }
+        return result;
+    }
+
+    /**
+     * Maps and reduces {@code long} values using monoid without boxing.
+     *
+     * @param threads number of concurrent threads.
+     * @param values  values to reduce.
+     * @param lift    mapping function.
+     * @param monoid  monoid to use.
+     * @return values reduced by provided monoid or {@link LongMonoid#getIdentity() identity} if not values specified.
+     * @throws InterruptedException if threads were interrupted
+     */
+    public long mapReduce(final int threads, final long[] values, final LongUnaryOperator lift, final LongMonoid monoid) throws InterruptedException {
+        final LongBinaryOperator operator = monoid.getOperator();
+        final List<Long> partial = mapRanges(threads, values.length, (from, to) -> {
+            long result = monoid.getIdentity();
+            for (int i = from; i < to; i++) {
+                result = operator.applyAsLong(result, lift.applyAsLong(values[i]));
+            }
+            return result;
+        });
+        long result = monoid.getIdentity();
+        for (final long value : partial) {
+            result = operator.applyAsLong(result, value);
+        }
+        return result;
+    }
+
+    /**
+     * Maps and reduces {@code double} values using monoid without boxing.
+     *
+     * @param threads number of concurrent threads.
+     * @param values  values to reduce.
+     * @param lift    mapping function.
+     * @param monoid  monoid to use.
+     * @return values reduced by provided monoid or {@link DoubleMonoid#getIdentity() identity} if not values specified.
+     * @throws InterruptedException if threads were interrupted
+     */
+    public double mapReduce(final int threads, final double[] values, final DoubleUnaryOperator lift, final DoubleMonoid monoid) throws InterruptedException {
+        final DoubleBinaryOperator operator = monoid.getOperator();
+        final List<Double> partial = mapRanges(threads, values.length, (from, to) -> {
+            double result = monoid.getIdentity();
+            for (int i = from; i < to; i++) {
+                result = operator.applyAsDouble(result, lift.applyAsDouble(values[i]));
+            }
+            return result;
+        });
+        double result = monoid.getIdentity();
+        for (final double value : partial) {
+            result = operator.applyAsDouble(result, value);
+        }
+        return result;
+    }
+
+    /**
+     * Reduces {@code int} values using monoid without boxing.
+     *
+     * @param threads number of concurrent threads.
+     * @param values  values to reduce.
+     * @param monoid  monoid to use.
+     * @return values reduced by provided monoid or {@link IntMonoid#getIdentity() identity} if not values specified.
+     * @throws InterruptedException if threads were interrupted.
+     */
+    public int reduce(final int threads, final int[] values, final IntMonoid monoid) throws InterruptedException {
+        return mapReduce(threads, values, IntUnaryOperator.identity(), monoid);
+    }
+
+    /**
+     * Reduces {@code long} values using monoid without boxing.
+     *
+     * @param threads number of concurrent threads.
+     * @param values  values to reduce.
+     * @param monoid  monoid to use.
+     * @return values reduced by provided monoid or {@link LongMonoid#getIdentity() identity} if not values specified.
+     * @throws InterruptedException if threads were interrupted.
+     */
+    public long reduce(final int threads, final long[] values, final LongMonoid monoid) throws InterruptedException {
+        return mapReduce(threads, values, LongUnaryOperator.identity(), monoid);
+    }
+
+    /**
+     * Reduces {@code double} values using monoid without boxing.
+     *
+     * @param threads number of concurrent threads.
+     * @param values  values to reduce.
+     * @param monoid  monoid to use.
+     * @return values reduced by provided monoid or {@link DoubleMonoid#getIdentity() identity} if not values specified.
+     * @throws InterruptedException if threads were interrupted.
+     */
+    public double reduce(final int threads, final double[] values, final DoubleMonoid monoid) throws InterruptedException {
+        return mapReduce(threads, values, DoubleUnaryOperator.identity(), monoid);
+    }
+
+    /**
+     * Computes sum of values. Overflows the same way as {@link java.util.stream.IntStream#sum()}.
+     *
+     * @param threads number of concurrent threads.
+     * @param values  values to sum.
+     * @return sum of values or {@code 0}, if no values are given.
+     * @throws InterruptedException if threads were interrupted.
+     */
+    public int sum(final int threads, final int[] values) throws InterruptedException {
+        return reduce(threads, values, new IntMonoid(0, Integer::sum));
+    }
+
+    /**
+     * Computes sum of values. Overflows the same way as {@link java.util.stream.LongStream#sum()}.
+     *
+     * @param threads number of concurrent threads.
+     * @param values  values to sum.
+     * @return sum of values or {@code 0}, if no values are given.
+     * @throws InterruptedException if threads were interrupted.
+     */
+    public long sum(final int threads, final long[] values) throws InterruptedException {
+        return reduce(threads, values, new LongMonoid(0, Long::sum));
+    }
+
+    /**
+     * Computes sum of values.
+     *
+     * @param threads number of concurrent threads.
+     * @param values  values to sum.
+     * @return sum of values or {@code 0}, if no values are given.
+     * @throws InterruptedException if threads were interrupted.
+     */
+    public double sum(final int threads, final double[] values) throws InterruptedException {
+        return reduce(threads, values, new DoubleMonoid(0, Double::sum));
+    }
+
+    /**
+     * Computes the minimum value.
+     *
+     * @param threads number of concurrent threads.
+     * @param values  values to get minimum of.
+     * @return minimum of values or {@link Integer#MAX_VALUE}, if no values are given.
+     * @throws InterruptedException if threads were interrupted.
+     */
+    public int minimum(final int threads, final int[] values) throws InterruptedException {
+        return reduce(threads, values, new IntMonoid(Integer.MAX_VALUE, Math::min));
+    }
+
+    /**
+     * Computes the minimum value.
+     *
+     * @param threads number of concurrent threads.
+     * @param values  values to get minimum of.
+     * @return minimum of values or {@link Long#MAX_VALUE}, if no values are given.
+     * @throws InterruptedException if threads were interrupted.
+     */
+    public long minimum(final int threads, final long[] values) throws InterruptedException {
+        return reduce(threads, values, new LongMonoid(Long.MAX_VALUE, Math::min));
+    }
+
+    /**
+     * Computes the minimum value.
+     *
+     * @param threads number of concurrent threads.
+     * @param values  values to get minimum of.
+     * @return minimum of values or {@link Double#POSITIVE_INFINITY}, if no values are given.
+     * @throws InterruptedException if threads were interrupted.
+     */
+    public double minimum(final int threads, final double[] values) throws InterruptedException {
+        return reduce(threads, values, new DoubleMonoid(Double.POSITIVE_INFINITY, Math::min));
+    }
+
+    /**
+     * Computes the maximum value.
+     *
+     * @param threads number of concurrent threads.
+     * @param values  values to get maximum of.
+     * @return maximum of values or {@link Integer#MIN_VALUE}, if no values are given.
+     * @throws InterruptedException if threads were interrupted.
+     */
+    public int maximum(final int threads, final int[] values) throws InterruptedException {
+        return reduce(threads, values, new IntMonoid(Integer.MIN_VALUE, Math::max));
+    }
+
+    /**
+     * Computes the maximum value.
+     *
+     * @param threads number of concurrent threads.
+     * @param values  values to get maximum of.
+     * @return maximum of values or {@link Long#MIN_VALUE}, if no values are given.
+     * @throws InterruptedException if threads were interrupted.
+     */
+    public long maximum(final int threads, final long[] values) throws InterruptedException {
+        return reduce(threads, values, new LongMonoid(Long.MIN_VALUE, Math::max));
+    }
+
+    /**
+     * Computes the maximum value.
+     *
+     * @param threads number of concurrent threads.
+     * @param values  values to get maximum of.
+     * @return maximum of values or {@link Double#NEGATIVE_INFINITY}, if no values are given.
+     * @throws InterruptedException if threads were interrupted.
+     */
+    public double maximum(final int threads, final double[] values) throws InterruptedException {
+        return reduce(threads, values, new DoubleMonoid(Double.NEGATIVE_INFINITY, Math::max));
+    }
 }
@@ -0,0 +1,115 @@
+package ru.ifmo.rain.korobkov.concurrent;
+
+import org.junit.jupiter.api.*;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("IterativeParallelism Test")
+public class IterativeParallelismTest {
+    private static final List<Integer> VALUES = IntStream.range(0, 100).boxed().collect(Collectors.toList());
+
+    private static final int[] THREADS = {1, 3, 200};
+
+    private final IterativeParallelism parallelism = new IterativeParallelism();
+
+    @Test
+    @DisplayName("map and filter return mutable lists")
+    public void mutableResults() throws InterruptedException {
+        final List<Integer> mapped = parallelism.map(4, VALUES, x -> x * 2);
+        final List<Integer> filtered = parallelism.filter(4, VALUES, x -> x % 2 == 0);
+        final List<Integer> evens = VALUES.stream().map(x -> x * 2).collect(Collectors.toList());
+        assertEquals(evens, mapped);
+        assertEquals(evens.subList(0, 50), filtered);
+
+        for (final List<Integer> list : List.of(mapped, filtered)) {
+            final List<Integer> expected = new ArrayList<>(list);
+            list.add(-1);
+            list.add(0, -2);
+            list.remove(1);
+            list.set(0, -3);
+            list.removeIf(x -> x % 4 == 0);
+            expected.add(-1);
+            expected.add(0, -2);
+            expected.remove(1);
+            expected.set(0, -3);
+            expected.removeIf(x -> x % 4 == 0);
+            assertEquals(expected, list);
+        }
+    }
+
+    @Test
+    @DisplayName("join keeps order of values")
+    public void join() throws InterruptedException, IOException {
+        final String expected = VALUES.stream().map(Object::toString).collect(Collectors.joining());
+        for (final int threads : new int[]{1, 3, 200}) {
+            assertEquals(expected, parallelism.join(threads, VALUES));
+            final StringBuilder out = new StringBuilder();
+            parallelism.join(threads, VALUES, out);
+            assertEquals(expected, out.toString());
+        }
+        assertEquals("", parallelism.join(4, List.of()));
+    }
+
+    @Test
+    @DisplayName("topK of edge sizes")
+    public void topK() throws InterruptedException {
+        final List<Integer> values = new ArrayList<>(VALUES);
+        Collections.shuffle(values, new Random(4));
+        final List<Integer> descending = new ArrayList<>(VALUES);
+        descending.sort(Comparator.reverseOrder());
+        for (final int threads : THREADS) {
+            for (final int k : new int[]{0, 1, 7, 99, 100, 101, 1_000_000_000, Integer.MAX_VALUE}) {
+                assertEquals(descending.subList(0, Math.min(k, descending.size())),
+                        parallelism.topK(threads, values, k, Comparator.naturalOrder()));
+            }
+            assertEquals(List.of(), parallelism.topK(threads, List.<Integer>of(), Integer.MAX_VALUE, Comparator.naturalOrder()));
+        }
+        assertThrows(IllegalArgumentException.class, () -> parallelism.topK(2, values, -1, Comparator.naturalOrder()));
+    }
+
+    @Test
+    @DisplayName("sort is stable")
+    public void sort() throws InterruptedException {
+        final List<Integer> values = new ArrayList<>(VALUES);
+        Collections.shuffle(values, new Random(4));
+        final Comparator<Integer> byTens = Comparator.comparingInt(x -> x / 10);
+        final List<Integer> expected = new ArrayList<>(values);
+        expected.sort(byTens);
+        for (final int threads : THREADS) {
+            assertEquals(expected, parallelism.sort(threads, values, byTens));
+            assertEquals(List.of(), parallelism.sort(threads, List.<Integer>of(), byTens));
+            assertEquals(List.of(1), parallelism.sort(threads, List.of(1), byTens));
+        }
+    }
+
+    @Test
+    @DisplayName("Primitive reductions")
+    public void primitiveReductions() throws InterruptedException {
+        final int[] ints = VALUES.stream().mapToInt(x -> x - 50).toArray();
+        final long[] longs = VALUES.stream().mapToLong(x -> (x - 50) * 10_000_000_000L).toArray();
+        final double[] doubles = VALUES.stream().mapToDouble(x -> (x - 50) / 4.0).toArray();
+        for (final int threads : THREADS) {
+            assertEquals(-50, parallelism.sum(threads, ints));
+            assertEquals(-50, parallelism.minimum(threads, ints));
+            assertEquals(49, parallelism.maximum(threads, ints));
+            assertEquals(-500_000_000_000L, parallelism.sum(threads, longs));
+            assertEquals(-500_000_000_000L, parallelism.minimum(threads, longs));
+            assertEquals(490_000_000_000L, parallelism.maximum(threads, longs));
+            assertEquals(-12.5, parallelism.sum(threads, doubles));
+            assertEquals(-12.5, parallelism.minimum(threads, doubles));
+            assertEquals(12.25, parallelism.maximum(threads, doubles));
+            assertEquals(Arrays.stream(ints).map(x -> x * x).sum(),
+                    parallelism.mapReduce(threads, ints, x -> x * x, new IterativeParallelism.IntMonoid(0, Integer::sum)));
+
+            assertEquals(0, parallelism.sum(threads, new int[0]));
+            assertEquals(Integer.MAX_VALUE, parallelism.minimum(threads, new int[0]));
+            assertEquals(Long.MIN_VALUE, parallelism.maximum(threads, new long[0]));
+            assertEquals(Double.POSITIVE_INFINITY, parallelism.minimum(threads, new double[0]));
+        }
+    }
+}
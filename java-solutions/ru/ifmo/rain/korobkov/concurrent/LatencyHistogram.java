@@ -0,0 +1,45 @@
+package ru.ifmo.rain.korobkov.concurrent;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of latencies, updated without locking.
+ * Bucket {@code i} counts latencies in {@code [2^(i-1), 2^i)} nanoseconds, bucket {@code 0} counts zero latencies.
+ */
+public class LatencyHistogram {
+    /**
+     * Number of buckets.
+     */
+    public static final int BUCKETS = Long.SIZE;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    /**
+     * Counts latency, negative latencies are counted as zero.
+     *
+     * @param nanos latency in nanoseconds.
+     */
+    public void record(final long nanos) {
+        counts.incrementAndGet(BUCKETS - Long.numberOfLeadingZeros(Math.max(0, nanos)));
+    }
+
+    /**
+     * @return counts of all buckets.
+     */
+    public long[] toArray() {
+        final long[] result = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            result[i] = counts.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * Clears all buckets.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+    }
+}
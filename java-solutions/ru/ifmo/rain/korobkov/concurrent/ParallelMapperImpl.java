@@ -2,14 +2,49 @@ package ru.ifmo.rain.korobkov.concurrent;
 
 import info.kgeorgiy.java.advanced.mapper.ParallelMapper;
 
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
 import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class ParallelMapperImpl implements ParallelMapper {
+    /**
+     * Priority of tasks submitted without explicit priority.
+     */
+    public static final int DEFAULT_PRIORITY = 1;
 
-    private final List<Thread> workers = new ArrayList<>();
-    private final SynchronizedQueue<Task<?, ?>> taskQueue = new SynchronizedQueue<>();
+    private static final int SEGMENTS_PER_WORKER = 4;
+    private static final long TARGET_RANGE_NANOS = 50_000;
+    private static final int MAX_GRAIN = 1 << 16;
+    private static final int STREAM_BATCH = 1 << 10;
+    private static final int STREAM_BATCHES_PER_WORKER = 2;
+
+    private final int core;
+    private final long keepAliveNanos;
+    private final Thread[] workers;
+    private final List<Deque<Segment>> deques = new ArrayList<>();
+    private final Set<Task<?, ?>> tasks = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger nextDeque = new AtomicInteger();
+    private final AtomicLong virtualTime = new AtomicLong();
+    private final ParallelMapperStats stats;
+    private ObjectName mBeanName = null;
+
+    private final Object idle = new Object();
+    /**
+     * Number of published tasks. Written under {@link #idle} lock, read by workers without it.
+     */
+    private volatile long version = 0;
+    private int alive = 0;
+    private int idleWorkers = 0;
+    private volatile boolean closed = false;
 
 
     /**
@@ -17,139 +52,316 @@ public class ParallelMapperImpl implements ParallelMapper {
      * @param threads Mapper will use {@code threads} threads.
      */
     public ParallelMapperImpl(final int threads) {
-        IntStream.range(0, threads).mapToObj(i -> new Thread(() -> {
-            try {
-                while (!Thread.interrupted()) {
-                    final Task<?, ?> task;
-                    final Runnable runnable;
-                    synchronized (taskQueue) {
-                        task = taskQueue.peek();
-                        runnable = task.poll();
-                    }
-                    runnable.run();
-                    task.finish();
-                }
-            } catch (final InterruptedException e) {
-//                e.printStackTrace();
-            } finally {
-                Thread.currentThread().interrupt();
-            }
-        })).forEach(workers::add);
-        workers.forEach(Thread::start);
+        this(threads, threads, 0, TimeUnit.NANOSECONDS);
     }
 
-    private static class SynchronizedQueue<T> {
-        private final Queue<T> queue = new ArrayDeque<>();
-
-        public synchronized void add(final T e) {
-            queue.add(e);
-            notifyAll();
+    /**
+     * Creates mapper with elastic pool of workers.
+     * {@code core} workers are started at once and are kept forever.
+     * Extra workers, up to {@code max}, are started when tasks are submitted and there are no idle workers,
+     * and retire after being idle for {@code keepAlive}.
+     *
+     * @param core number of workers that are always kept.
+     * @param max maximal number of workers.
+     * @param keepAlive time an extra worker waits for new tasks before retiring.
+     * @param unit unit of {@code keepAlive}.
+     */
+    public ParallelMapperImpl(final int core, final int max, final long keepAlive, final TimeUnit unit) {
+        if (core < 0 || max <= 0 || core > max || keepAlive < 0) {
+            throw new IllegalArgumentException("Invalid pool sizes: core = " + core + ", max = " + max);
+        }
+        this.core = core;
+        this.keepAliveNanos = unit.toNanos(keepAlive);
+        workers = new Thread[max];
+        stats = new ParallelMapperStats(this, max);
+        IntStream.range(0, max).forEach(i -> deques.add(new ConcurrentLinkedDeque<>()));
+        synchronized (idle) {
+            startWorkers(core);
         }
+    }
 
-        public synchronized void poll() {
-            queue.poll();
+    /**
+     * Starts up to {@code count} workers in free slots. Should be called under {@link #idle} lock.
+     */
+    private void startWorkers(final int count) {
+        for (int i = 0, started = 0; i < workers.length && started < count; i++) {
+            if (workers[i] == null) {
+                final int slot = i;
+                workers[slot] = new Thread(() -> work(slot));
+                workers[slot].start();
+                alive++;
+                started++;
+            }
         }
+    }
 
-        public synchronized T peek() throws InterruptedException {
-            while (queue.isEmpty()) {
-                wait();
+    private void work(final int slot) {
+        try {
+            while (!closed && !Thread.interrupted()) {
+                final long seen = version;
+                final long start = System.nanoTime();
+                if (runNext(slot)) {
+                    stats.addBusy(slot, System.nanoTime() - start);
+                } else if (!awaitWork(slot, seen)) {
+                    return;
+                }
             }
-            return queue.peek();
+        } catch (final InterruptedException e) {
+//                e.printStackTrace();
+        } finally {
+            synchronized (idle) {
+                if (workers[slot] == Thread.currentThread()) {
+                    workers[slot] = null;
+                    alive--;
+                }
+            }
+            Thread.currentThread().interrupt();
         }
     }
 
-    private class Task<T, R> {
+    /**
+     * Claims and runs a range of a segment of the worker's own deque or, if it is empty,
+     * of a segment of some other worker.
+     * Segment of the task with the least {@link Task#pass pass} is chosen,
+     * ties are broken in favour of the newest own segment or the oldest stolen one.
+     *
+     * @return {@code false} if there is no work at all.
+     */
+    private boolean runNext(final int worker) {
+        if (runFrom(deques.get(worker), true)) {
+            return true;
+        }
+        for (int i = 1; i < deques.size(); i++) {
+            if (runFrom(deques.get((worker + i) % deques.size()), false)) {
+                return true;
+            }
+        }
+        return false;
+    }
 
-        private final Queue<Runnable> queue = new ArrayDeque<>();
-        private final SynchronizedMapList result;
-        private final Function<? super T, ? extends R> f;
-        private volatile boolean terminated = false;
+    private static boolean runFrom(final Deque<Segment> deque, final boolean own) {
+        while (true) {
+            Segment best = null;
+            final Iterator<Segment> it = own ? deque.descendingIterator() : deque.iterator();
+            while (it.hasNext()) {
+                final Segment segment = it.next();
+                if (segment.isExhausted()) {
+                    it.remove();
+                } else if (best == null || segment.task.pass.get() < best.task.pass.get()) {
+                    best = segment;
+                }
+            }
+            if (best == null) {
+                return false;
+            }
+            if (best.runNext()) {
+                return true;
+            }
+        }
+    }
 
-        private int runned;
-        private int completed;
+    /**
+     * Waits for new work. Extra worker that waits longer than keep-alive time frees its slot,
+     * unless some work was published meanwhile.
+     *
+     * @return {@code false} if the worker retired.
+     */
+    private boolean awaitWork(final int slot, final long seen) throws InterruptedException {
+        synchronized (idle) {
+            idleWorkers++;
+            try {
+                final long deadline = System.nanoTime() + keepAliveNanos;
+                while (version == seen && !closed) {
+                    if (alive <= core) {
+                        idle.wait();
+                    } else {
+                        final long left = deadline - System.nanoTime();
+                        if (left <= 0) {
+                            if (hasWork()) {
+                                return true;
+                            }
+                            workers[slot] = null;
+                            alive--;
+                            return false;
+                        }
+                        TimeUnit.NANOSECONDS.timedWait(idle, left);
+                    }
+                }
+                return true;
+            } finally {
+                idleWorkers--;
+            }
+        }
+    }
 
-        public Task(final Function<? super T, ? extends R> f, final List<? extends T> args) {
-            result = new SynchronizedMapList(args.size());
-            this.f = f;
-            runned = 0;
-            completed = 0;
+    private boolean hasWork() {
+        return deques.stream().anyMatch(deque -> deque.stream().anyMatch(segment -> !segment.isExhausted()));
+    }
 
-            IntStream.range(0, args.size())
-                    .<Runnable>mapToObj(i -> () -> result.set(i, args.get(i)))
-                    .forEach(queue::add);
+    private void signalWork() {
+        synchronized (idle) {
+            version++;
+            idle.notifyAll();
         }
+    }
 
-        public synchronized Runnable poll() {
-            final Runnable runnable = queue.poll();
-            runned++;
-            if (runned == result.data.size()) {
-                taskQueue.poll();
+    /**
+     * Publishes segments of the task, then starts workers and wakes idle ones atomically,
+     * so an idle worker either sees the new version or has already retired and is replaced.
+     */
+    private void submit(final Task<?, ?> task, final int size) {
+        final int segments = Math.min(size, deques.size() * SEGMENTS_PER_WORKER);
+        final int block = size / segments;
+        final int add = size % segments;
+        int from = 0;
+        for (int i = 0; i < segments; i++) {
+            final int to = from + block + (i < add ? 1 : 0);
+            deques.get(Math.floorMod(nextDeque.getAndIncrement(), deques.size()))
+                    .addLast(new Segment(task, from, to));
+            from = to;
+        }
+        synchronized (idle) {
+            if (!closed) {
+                startWorkers(Math.min(size, workers.length) - idleWorkers);
             }
-            return runnable;
+            signalWork();
         }
+    }
 
-        public synchronized void finish() {
-            completed++;
-            if (completed == result.data.size()) {
-                terminate();
-            }
+    /**
+     * Contiguous range of task arguments. Any worker may claim the next
+     * {@link Task#grain} indices of it by advancing the cursor.
+     */
+    private static class Segment {
+        private final Task<?, ?> task;
+        private final AtomicInteger cursor;
+        private final int to;
+
+        Segment(final Task<?, ?> task, final int from, final int to) {
+            this.task = task;
+            this.cursor = new AtomicInteger(from);
+            this.to = to;
         }
 
-        private void terminate() {
-            terminated = true;
-            notify();
+        boolean isExhausted() {
+            return task.terminated || cursor.get() >= to;
         }
 
-        public synchronized List<R> getResult() throws InterruptedException {
-            while (!terminated) {
-                wait();
+        /**
+         * @return {@code false} if the segment is exhausted.
+         */
+        boolean runNext() {
+            if (isExhausted()) {
+                return false;
+            }
+            final int grain = task.grain;
+            final int from = cursor.getAndAdd(grain);
+            if (from >= to) {
+                return false;
             }
-            return result.get();
+            task.run(from, Math.min(to, from + grain));
+            return true;
         }
+    }
 
-        private class SynchronizedMapList {
-            private final List<R> data;
-            private RuntimeException runtimeException = null;
+    /**
+     * Mapping call. Tasks are scheduled by stride scheduling: running a range advances the {@link #pass}
+     * of the task by its run time divided by the task priority, and workers prefer tasks with the least pass.
+     * So concurrent tasks interleave, and a task gets worker time proportional to its priority.
+     */
+    private class Task<T, R> {
+        private final List<? extends T> args;
+        private final Function<? super T, ? extends R> f;
+        private final Object[] result;
+        private final AtomicInteger remaining;
+        private volatile boolean terminated = false;
+        private volatile int grain = 1;
+        private final long submitted = System.nanoTime();
+        private final AtomicBoolean started = new AtomicBoolean();
+        private long startedAt;
+        private RuntimeException runtimeException = null;
+        private final CompletableFuture<List<R>> future = new CompletableFuture<>();
+        private final int priority;
+        private final AtomicLong pass = new AtomicLong(virtualTime.get());
 
-            SynchronizedMapList(final int length) {
-                data = new ArrayList<>(Collections.nCopies(length, null));
-            }
+        public Task(final Function<? super T, ? extends R> f, final List<? extends T> args, final int priority) {
+            this.f = f;
+            this.args = args;
+            this.priority = priority;
+            result = new Object[args.size()];
+            remaining = new AtomicInteger(args.size());
+            future.whenComplete((r, e) -> {
+                if (future.isCancelled()) {
+                    cancel();
+                }
+            });
+        }
 
-            private void set(final int pos, final T value) {
-//                if (terminated) {
-//                    return;
-//                }
+        public void run(final int from, final int to) {
+            final long start = System.nanoTime();
+            if (!started.get() && started.compareAndSet(false, true)) {
+                startedAt = start;
+                stats.taskStarted(start - submitted);
+            }
+            virtualTime.accumulateAndGet(pass.get(), Math::max);
+            for (int i = from; i < to && !terminated; i++) {
                 try {
-                    setByIndex(pos, f.apply(value));
+                    result[i] = f.apply(args.get(i));
                 } catch (final RuntimeException e) {
                     addException(e);
                 }
             }
+            final long elapsed = System.nanoTime() - start;
+            adjustGrain(to - from, elapsed);
+            pass.addAndGet(Math.max(1, elapsed / priority));
+            if (remaining.addAndGet(from - to) == 0) {
+                terminate();
+            }
+        }
 
-            private synchronized void setByIndex(final int pos, final R value) {
-//                if (terminated) {
-//                    return;
-//                }
-                data.set(pos, value);
+        /**
+         * Picks the range size so that one claim takes about {@link #TARGET_RANGE_NANOS}.
+         */
+        private void adjustGrain(final int count, final long elapsed) {
+            final long perElement = Math.max(1, elapsed / count);
+            grain = (int) Math.max(1, Math.min(MAX_GRAIN, TARGET_RANGE_NANOS / perElement));
+        }
+
+        private synchronized void addException(final RuntimeException e) {
+            stats.exceptionThrown();
+            if (terminated) {
+                return;
+            }
+            if (runtimeException == null) {
+                runtimeException = e;
+            } else {
+                runtimeException.addSuppressed(e);
             }
+        }
 
-            private synchronized void addException(final RuntimeException e) {
-                if (terminated) {
-                    return;
-                }
-                if (runtimeException == null) {
-                    runtimeException = e;
-                } else {
-                    runtimeException.addSuppressed(e);
-                }
+        @SuppressWarnings("unchecked")
+        private synchronized void terminate() {
+            terminated = true;
+            if (!tasks.remove(this)) {
+                return;
             }
+            stats.taskCompleted(System.nanoTime() - startedAt);
+            if (runtimeException != null) {
+                future.completeExceptionally(runtimeException);
+            } else {
+                future.complete((List<R>) Arrays.asList(result));
+            }
+        }
 
-            public synchronized List<R> get() {
-                if (runtimeException != null) {
-                    throw runtimeException;
-                }
-                return data;
+        /**
+         * Stops the task: ranges that are not claimed yet are never run.
+         */
+        private void cancel() {
+            terminated = true;
+            if (tasks.remove(this)) {
+                stats.taskCancelled();
             }
+            future.cancel(false);
         }
     }
 
@@ -166,9 +378,263 @@ public class ParallelMapperImpl implements ParallelMapper {
      */
     @Override
     public <T, R> List<R> map(final Function<? super T, ? extends R> f, final List<? extends T> args) throws InterruptedException {
-        final Task<T, R> task = new Task<>(f, args);
-        taskQueue.add(task);
-        return task.getResult();
+        return map(f, args, DEFAULT_PRIORITY);
+    }
+
+    /**
+     * Maps function {@code f} over specified {@code args} with the given priority.
+     * While several tasks run concurrently, each gets worker time proportional to its priority.
+     *
+     * @param f mapping function.
+     * @param args arguments for {@code f}.
+     * @param priority positive priority of the task.
+     * @param <T> source type.
+     * @param <R> result type.
+     * @return list with results of applying f function.
+     * @throws InterruptedException if threads were interrupted.
+     * @throws IllegalStateException if the mapper is closed.
+     */
+    public <T, R> List<R> map(final Function<? super T, ? extends R> f, final List<? extends T> args, final int priority) throws InterruptedException {
+        final CompletableFuture<List<R>> future = mapAsync(f, args, priority);
+        try {
+            return future.get();
+        } catch (final InterruptedException e) {
+            future.cancel(false);
+            throw e;
+        } catch (final CancellationException e) {
+            throw new InterruptedException("Mapper was closed");
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Asynchronously maps function {@code f} over specified {@code args}.
+     * Cancelling the returned future stops the elements that were not started yet.
+     *
+     * @param f mapping function.
+     * @param args arguments for {@code f}.
+     * @param <T> source type.
+     * @param <R> result type.
+     * @return future of list with results of applying f function.
+     */
+    public <T, R> CompletableFuture<List<R>> mapAsync(final Function<? super T, ? extends R> f, final List<? extends T> args) {
+        return mapAsync(f, args, DEFAULT_PRIORITY);
+    }
+
+    /**
+     * Asynchronously maps function {@code f} over specified {@code args} with the given priority.
+     *
+     * @param f mapping function.
+     * @param args arguments for {@code f}.
+     * @param priority positive priority of the task.
+     * @param <T> source type.
+     * @param <R> result type.
+     * @return future of list with results of applying f function,
+     * failed with {@link IllegalStateException} if the mapper is closed.
+     * @see #map(Function, List, int)
+     */
+    public <T, R> CompletableFuture<List<R>> mapAsync(final Function<? super T, ? extends R> f, final List<? extends T> args, final int priority) {
+        if (priority <= 0) {
+            throw new IllegalArgumentException("Priority should be positive: " + priority);
+        }
+        if (closed) {
+            return CompletableFuture.failedFuture(new IllegalStateException("Mapper is closed"));
+        }
+        if (args.isEmpty()) {
+            return CompletableFuture.completedFuture(new ArrayList<>());
+        }
+        final Task<T, R> task = new Task<>(f, args, priority);
+        tasks.add(task);
+        if (closed) {
+            // close() may have cancelled tasks before this one was added
+            task.cancel();
+            return task.future;
+        }
+        submit(task, args.size());
+        return task.future;
+    }
+
+    /**
+     * Lazily maps function {@code f} over elements of {@code args} in the order of elements.
+     * Elements are mapped by batches of {@code batch} elements, at most {@code window} batches are
+     * read ahead of the consumer, so memory use does not depend on the number of elements.
+     * Exceptions thrown by {@code f} are rethrown by the returned iterator.
+     *
+     * @param f mapping function.
+     * @param args arguments for {@code f}, read from the consumer thread.
+     * @param batch number of elements in one batch.
+     * @param window maximal number of batches read ahead.
+     * @param <T> source type.
+     * @param <R> result type.
+     * @return iterator over results of applying f function, closing it cancels batches read ahead.
+     */
+    public <T, R> StreamingIterator<T, R> mapStream(final Function<? super T, ? extends R> f, final Iterator<? extends T> args,
+                                                    final int batch, final int window) {
+        if (batch <= 0 || window <= 0) {
+            throw new IllegalArgumentException("Batch and window should be positive: " + batch + ", " + window);
+        }
+        return new StreamingIterator<>(f, args, batch, window);
+    }
+
+    /**
+     * Lazily maps function {@code f} over elements of {@code args} in the order of elements,
+     * keeping a bounded number of elements in memory.
+     *
+     * @param f mapping function.
+     * @param args arguments for {@code f}.
+     * @param <T> source type.
+     * @param <R> result type.
+     * @return sequential stream of results of applying f function, closing it closes {@code args}.
+     * @see #mapStream(Function, Iterator, int, int)
+     */
+    public <T, R> Stream<R> mapStream(final Function<? super T, ? extends R> f, final Stream<? extends T> args) {
+        final StreamingIterator<T, R> iterator = mapStream(f, args.iterator(), STREAM_BATCH, workers.length * STREAM_BATCHES_PER_WORKER);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED), false)
+                .onClose(iterator::close)
+                .onClose(args::close);
+    }
+
+    /**
+     * Iterator over results of {@link #mapStream(Function, Iterator, int, int) streaming map}.
+     * Batches may complete in any order; the queue of submitted batches is a bounded reorder buffer:
+     * results are consumed in submission order, and no more input is read while the queue is full.
+     */
+    public class StreamingIterator<T, R> implements Iterator<R>, AutoCloseable {
+        private final Function<? super T, ? extends R> f;
+        private final Iterator<? extends T> args;
+        private final int batch;
+        private final int window;
+        private final Queue<CompletableFuture<List<R>>> pending = new ArrayDeque<>();
+        private Iterator<R> current = Collections.emptyIterator();
+        private boolean done = false;
+
+        private StreamingIterator(final Function<? super T, ? extends R> f, final Iterator<? extends T> args,
+                                  final int batch, final int window) {
+            this.f = f;
+            this.args = args;
+            this.batch = batch;
+            this.window = window;
+        }
+
+        private void fill() {
+            while (!done && pending.size() < window && args.hasNext()) {
+                final List<T> values = new ArrayList<>(batch);
+                while (values.size() < batch && args.hasNext()) {
+                    values.add(args.next());
+                }
+                pending.add(mapAsync(f, values));
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!current.hasNext()) {
+                fill();
+                final CompletableFuture<List<R>> future = pending.poll();
+                if (future == null) {
+                    return false;
+                }
+                fill();
+                current = await(future).iterator();
+            }
+            return true;
+        }
+
+        @Override
+        public R next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return current.next();
+        }
+
+        private List<R> await(final CompletableFuture<List<R>> future) {
+            try {
+                return future.get();
+            } catch (final InterruptedException e) {
+                future.cancel(false);
+                close();
+                Thread.currentThread().interrupt();
+                throw new CancellationException("Interrupted while waiting for results");
+            } catch (final ExecutionException e) {
+                close();
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+
+        /**
+         * Cancels batches read ahead.
+         */
+        @Override
+        public void close() {
+            done = true;
+            pending.forEach(future -> future.cancel(false));
+            pending.clear();
+            current = Collections.emptyIterator();
+        }
+    }
+
+    /**
+     * Returns statistics of this mapper.
+     *
+     * @return live statistics, updated as tasks run.
+     */
+    public ParallelMapperStats getStats() {
+        return stats;
+    }
+
+    /**
+     * Registers {@link #getStats() statistics} of this mapper in the platform MBean server
+     * as {@code ru.ifmo.rain.korobkov.concurrent:type=ParallelMapper,name=<name>}.
+     * The bean is unregistered on {@link #close()}.
+     *
+     * @param name name of this mapper.
+     * @throws JMException if registration failed.
+     */
+    public synchronized void registerMBean(final String name) throws JMException {
+        if (mBeanName != null) {
+            throw new IllegalStateException("Mapper is already registered as " + mBeanName);
+        }
+        final ObjectName objectName = new ObjectName(
+                getClass().getPackageName() + ":type=ParallelMapper,name=" + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(stats, objectName);
+        mBeanName = objectName;
+    }
+
+    private synchronized void unregisterMBean() {
+        if (mBeanName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(mBeanName);
+            } catch (final JMException e) {
+                e.printStackTrace();
+            }
+            mBeanName = null;
+        }
+    }
+
+    int queuedTasks() {
+        return (int) tasks.stream().filter(task -> !task.started.get()).count();
+    }
+
+    int liveWorkers() {
+        synchronized (idle) {
+            return alive;
+        }
+    }
+
+    int activeTasks() {
+        return tasks.size();
+    }
+
+    long inFlightElements() {
+        return tasks.stream().mapToLong(task -> task.remaining.get()).sum();
     }
 
     /**
@@ -176,10 +642,23 @@ public class ParallelMapperImpl implements ParallelMapper {
      */
     @Override
     public void close() {
-        workers.forEach(Thread::interrupt);
-        taskQueue.queue.forEach(Task::terminate);
+        unregisterMBean();
+        closed = true;
+        signalWork();
+        final List<Thread> live;
+        synchronized (idle) {
+            live = new ArrayList<>();
+            for (final Thread worker : workers) {
+                if (worker != null) {
+                    live.add(worker);
+                }
+            }
+        }
+        live.forEach(Thread::interrupt);
+        deques.forEach(Deque::clear);
+        tasks.forEach(Task::cancel);
         try {
-            IterativeParallelism.waitThreads(workers, false);
+            IterativeParallelism.waitThreads(live, false);
         } catch (final InterruptedException e) {
             e.printStackTrace();
         }
@@ -0,0 +1,89 @@
+package ru.ifmo.rain.korobkov.concurrent;
+
+import org.junit.jupiter.api.*;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("ParallelMapperImpl Test")
+public class ParallelMapperImplTest {
+    private static final List<Integer> VALUES = List.of(1, 2, 3, 4, 5);
+    private static final List<Integer> SQUARES = List.of(1, 4, 9, 16, 25);
+
+    @Test
+    @DisplayName("Extra workers with short keep-alive do not lose tasks")
+    public void elasticPoolWithoutCore() {
+        for (final long keepAliveMicros : new long[]{20, 100}) {
+            final ParallelMapperImpl mapper = new ParallelMapperImpl(0, 1, keepAliveMicros, TimeUnit.MICROSECONDS);
+            try {
+                assertTimeoutPreemptively(Duration.ofSeconds(30), () -> {
+                    for (int i = 0; i < 200_000; i++) {
+                        assertEquals(SQUARES, mapper.mapAsync(x -> x * x, VALUES).get());
+                    }
+                });
+            } finally {
+                mapper.close();
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("mapAsync after close fails")
+    public void mapAsyncAfterClose() {
+        final ParallelMapperImpl mapper = new ParallelMapperImpl(2);
+        mapper.close();
+        final CompletableFuture<List<Integer>> future = mapper.mapAsync(Function.identity(), VALUES);
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+            final ExecutionException e = assertThrows(ExecutionException.class, future::get);
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        });
+        assertThrows(IllegalStateException.class, () -> mapper.map(Function.identity(), VALUES));
+    }
+
+    @Test
+    @DisplayName("mapStream keeps order and rethrows exceptions")
+    public void mapStream() {
+        final ParallelMapperImpl mapper = new ParallelMapperImpl(3);
+        try {
+            assertTimeoutPreemptively(Duration.ofSeconds(30), () -> {
+                final List<Integer> values = IntStream.range(0, 10_000).boxed().collect(Collectors.toList());
+                final List<Integer> squares = values.stream().map(x -> x * x).collect(Collectors.toList());
+                try (final Stream<Integer> stream = mapper.mapStream(x -> x * x, values.stream())) {
+                    assertEquals(squares, stream.collect(Collectors.toList()));
+                }
+                for (final int batch : new int[]{1, 7, 20_000}) {
+                    final Iterator<Integer> iterator = mapper.mapStream(x -> x * x, values.iterator(), batch, 2);
+                    final List<Integer> results = new ArrayList<>();
+                    iterator.forEachRemaining(results::add);
+                    assertEquals(squares, results);
+                }
+                try (final Stream<Integer> stream = mapper.mapStream(x -> x * x, Stream.<Integer>empty())) {
+                    assertEquals(0, stream.count());
+                }
+
+                final Iterator<Integer> failing = mapper.mapStream(x -> {
+                    if (x == 5_000) {
+                        throw new ArithmeticException();
+                    }
+                    return x;
+                }, values.iterator(), 100, 4);
+                assertThrows(ArithmeticException.class, () -> failing.forEachRemaining(x -> {}));
+            });
+            assertThrows(IllegalArgumentException.class, () -> mapper.mapStream(x -> x, VALUES.iterator(), 0, 1));
+            assertThrows(IllegalArgumentException.class, () -> mapper.mapStream(x -> x, VALUES.iterator(), 1, 0));
+        } finally {
+            mapper.close();
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package ru.ifmo.rain.korobkov.concurrent;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Statistics of {@link ParallelMapperImpl}.
+ * Counters are updated by workers without locking, queue state is read from the mapper on demand.
+ */
+public class ParallelMapperStats implements ParallelMapperStatsMBean {
+    /**
+     * Number of buckets of latency histograms.
+     */
+    public static final int BUCKETS = LatencyHistogram.BUCKETS;
+
+    private final ParallelMapperImpl mapper;
+    private final AtomicLongArray busyNanos;
+    private final LatencyHistogram waitLatency = new LatencyHistogram();
+    private final LatencyHistogram runLatency = new LatencyHistogram();
+    private final LongAdder completedTasks = new LongAdder();
+    private final LongAdder cancelledTasks = new LongAdder();
+    private final LongAdder exceptions = new LongAdder();
+    private volatile long since = System.nanoTime();
+
+    ParallelMapperStats(final ParallelMapperImpl mapper, final int workers) {
+        this.mapper = mapper;
+        this.busyNanos = new AtomicLongArray(workers);
+    }
+
+    void addBusy(final int worker, final long nanos) {
+        busyNanos.addAndGet(worker, nanos);
+    }
+
+    void taskStarted(final long waitNanos) {
+        waitLatency.record(waitNanos);
+    }
+
+    void taskCompleted(final long runNanos) {
+        completedTasks.increment();
+        runLatency.record(runNanos);
+    }
+
+    void taskCancelled() {
+        cancelledTasks.increment();
+    }
+
+    void exceptionThrown() {
+        exceptions.increment();
+    }
+
+
+    @Override
+    public int getWorkers() {
+        return mapper.liveWorkers();
+    }
+
+    @Override
+    public int getMaxWorkers() {
+        return busyNanos.length();
+    }
+
+    @Override
+    public int getQueuedTasks() {
+        return mapper.queuedTasks();
+    }
+
+    @Override
+    public int getActiveTasks() {
+        return mapper.activeTasks();
+    }
+
+    @Override
+    public long getInFlightElements() {
+        return mapper.inFlightElements();
+    }
+
+    @Override
+    public long getCompletedTasks() {
+        return completedTasks.sum();
+    }
+
+    @Override
+    public long getCancelledTasks() {
+        return cancelledTasks.sum();
+    }
+
+    @Override
+    public long getExceptions() {
+        return exceptions.sum();
+    }
+
+    @Override
+    public long[] getWorkerBusyNanos() {
+        final long[] result = new long[busyNanos.length()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = busyNanos.get(i);
+        }
+        return result;
+    }
+
+    @Override
+    public double[] getWorkerUtilization() {
+        final long elapsed = Math.max(1, System.nanoTime() - since);
+        final long[] busy = getWorkerBusyNanos();
+        final double[] result = new double[busy.length];
+        for (int i = 0; i < busy.length; i++) {
+            result[i] = Math.min(1.0, (double) busy[i] / elapsed);
+        }
+        return result;
+    }
+
+    @Override
+    public long[] getWaitLatencyHistogram() {
+        return waitLatency.toArray();
+    }
+
+    @Override
+    public long[] getRunLatencyHistogram() {
+        return runLatency.toArray();
+    }
+
+    @Override
+    public void reset() {
+        since = System.nanoTime();
+        for (int i = 0; i < busyNanos.length(); i++) {
+            busyNanos.set(i, 0);
+        }
+        waitLatency.reset();
+        runLatency.reset();
+        completedTasks.reset();
+        cancelledTasks.reset();
+        exceptions.reset();
+    }
+}
@@ -0,0 +1,74 @@
+package ru.ifmo.rain.korobkov.concurrent;
+
+/**
+ * Management interface of {@link ParallelMapperImpl} statistics.
+ *
+ * <p>Latency histograms have {@link ParallelMapperStats#BUCKETS} buckets:
+ * bucket {@code i} counts latencies in {@code [2^(i-1), 2^i)} nanoseconds, bucket {@code 0} counts zero latencies.
+ */
+public interface ParallelMapperStatsMBean {
+    /**
+     * @return number of live worker threads.
+     */
+    int getWorkers();
+
+    /**
+     * @return maximal number of worker threads.
+     */
+    int getMaxWorkers();
+
+    /**
+     * @return number of submitted tasks none of whose elements were started yet.
+     */
+    int getQueuedTasks();
+
+    /**
+     * @return number of submitted tasks that are not finished yet.
+     */
+    int getActiveTasks();
+
+    /**
+     * @return number of elements of unfinished tasks that are not mapped yet.
+     */
+    long getInFlightElements();
+
+    /**
+     * @return number of finished tasks, including failed ones.
+     */
+    long getCompletedTasks();
+
+    /**
+     * @return number of cancelled tasks.
+     */
+    long getCancelledTasks();
+
+    /**
+     * @return number of exceptions thrown by mapped functions.
+     */
+    long getExceptions();
+
+    /**
+     * @return time in nanoseconds workers of every pool slot spent running elements.
+     */
+    long[] getWorkerBusyNanos();
+
+    /**
+     * @return share of time since start workers of every pool slot spent running elements.
+     */
+    double[] getWorkerUtilization();
+
+    /**
+     * @return histogram of time from task submission to start of its first element.
+     */
+    long[] getWaitLatencyHistogram();
+
+    /**
+     * @return histogram of time from start of task's first element to task completion.
+     */
+    long[] getRunLatencyHistogram();
+
+    /**
+     * Clears counters and histograms.
+     */
+    void reset();
+}
@@ -0,0 +1,287 @@
+package ru.ifmo.rain.korobkov.concurrent;
+
+import info.kgeorgiy.java.advanced.concurrent.AdvancedIP;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.stream.Collectors;
+
+/**
+ * Benchmarks for {@link IterativeParallelism} and {@link ParallelMapperImpl}.
+ *
+ * <p>Usage: {@code ParallelismBenchmark [suite|overhead|fairness] [threads...]}.
+ * <ul>
+ *     <li>{@code suite} (default) runs every operation for every list size, element cost and thread count
+ *     on standalone threads, on {@link ParallelMapperImpl} and on parallel streams as a baseline;</li>
+ *     <li>{@code overhead} measures per-call overhead of execution backends on small lists;</li>
+ *     <li>{@code fairness} measures latency of small {@link ParallelMapperImpl} calls
+ *     while a large call runs in background.</li>
+ * </ul>
+ * Each measurement is warmed up and then repeated, the median time of one call is reported.
+ */
+public class ParallelismBenchmark {
+    private static final int WARMUP_CALLS = 2_000;
+    private static final int MEASURED_CALLS = 10_000;
+
+    private static final long WARMUP_NANOS = 1_000_000_000L;
+    private static final int ITERATIONS = 5;
+    private static final long ITERATION_NANOS = 500_000_000L;
+
+    private static final int FAIRNESS_CALLS = 1_000;
+    private static final int BACKGROUND_SIZE = 1_000_000;
+    private static final int FOREGROUND_SIZE = 100;
+    private static final int[] PRIORITIES = {1, 8};
+
+    private static final int[] SIZES = {1_000, 100_000, 1_000_000};
+    private static final int[] COSTS = {0, 100};
+    private static final AdvancedIP.Monoid<Long> SUM = new AdvancedIP.Monoid<>(0L, Long::sum);
+
+    /**
+     * Prevents results from being eliminated as dead code.
+     */
+    private static volatile Object sink;
+
+    /**
+     * Simulates element processing taking {@code cost} iterations.
+     */
+    private static int work(final int value, final int cost) {
+        int result = value;
+        for (int i = 0; i < cost; i++) {
+            result = result * 31 + i;
+        }
+        return result;
+    }
+
+    private enum Mode {
+        THREADS, MAPPER, STREAMS
+    }
+
+    private enum Operation {
+        MAXIMUM {
+            @Override
+            Object run(final IterativeParallelism ip, final int threads, final List<Integer> values, final int cost) throws InterruptedException {
+                return ip.maximum(threads, values, Comparator.comparingInt(v -> work(v, cost)));
+            }
+
+            @Override
+            Object stream(final List<Integer> values, final int cost) {
+                return values.parallelStream().max(Comparator.comparingInt(v -> work(v, cost))).orElse(null);
+            }
+        },
+        FILTER {
+            @Override
+            Object run(final IterativeParallelism ip, final int threads, final List<Integer> values, final int cost) throws InterruptedException {
+                return ip.filter(threads, values, v -> work(v, cost) % 3 == 0);
+            }
+
+            @Override
+            Object stream(final List<Integer> values, final int cost) {
+                return values.parallelStream().filter(v -> work(v, cost) % 3 == 0).collect(Collectors.toList());
+            }
+        },
+        MAP {
+            @Override
+            Object run(final IterativeParallelism ip, final int threads, final List<Integer> values, final int cost) throws InterruptedException {
+                return ip.map(threads, values, v -> work(v, cost));
+            }
+
+            @Override
+            Object stream(final List<Integer> values, final int cost) {
+                return values.parallelStream().map(v -> work(v, cost)).collect(Collectors.toList());
+            }
+        },
+        JOIN {
+            @Override
+            Object run(final IterativeParallelism ip, final int threads, final List<Integer> values, final int cost) throws InterruptedException {
+                return ip.join(threads, values);
+            }
+
+            @Override
+            Object stream(final List<Integer> values, final int cost) {
+                return values.parallelStream().map(Object::toString).collect(Collectors.joining());
+            }
+        },
+        MAP_REDUCE {
+            @Override
+            Object run(final IterativeParallelism ip, final int threads, final List<Integer> values, final int cost) throws InterruptedException {
+                return ip.mapReduce(threads, values, v -> (long) work(v, cost), SUM);
+            }
+
+            @Override
+            Object stream(final List<Integer> values, final int cost) {
+                return values.parallelStream().mapToLong(v -> work(v, cost)).sum();
+            }
+        };
+
+        abstract Object run(IterativeParallelism ip, int threads, List<Integer> values, int cost) throws InterruptedException;
+
+        abstract Object stream(List<Integer> values, int cost);
+    }
+
+    @FunctionalInterface
+    private interface Call {
+        Object run() throws InterruptedException;
+    }
+
+    /**
+     * Runs {@code call} repeatedly for {@code nanos} nanoseconds.
+     *
+     * @return average time of one call in microseconds.
+     */
+    private static double iteration(final Call call, final long nanos) throws InterruptedException {
+        final long start = System.nanoTime();
+        long calls = 0;
+        long elapsed;
+        do {
+            sink = call.run();
+            calls++;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < nanos);
+        return elapsed / 1e3 / calls;
+    }
+
+    /**
+     * @return median time of one call in microseconds.
+     */
+    private static double measure(final Call call) throws InterruptedException {
+        iteration(call, WARMUP_NANOS);
+        final double[] times = new double[ITERATIONS];
+        for (int i = 0; i < ITERATIONS; i++) {
+            times[i] = iteration(call, ITERATION_NANOS);
+        }
+        Arrays.sort(times);
+        return times[ITERATIONS / 2];
+    }
+
+    private static void suite(final int[] threadCounts) throws InterruptedException {
+        System.out.println("operation\tsize\tcost\tthreads\tmode\ttime(us)");
+        for (final int threads : threadCounts) {
+            try (final ParallelMapperImpl mapper = new ParallelMapperImpl(threads)) {
+                final IterativeParallelism standalone = new IterativeParallelism();
+                final IterativeParallelism mapped = new IterativeParallelism(mapper);
+                for (final Operation operation : Operation.values()) {
+                    for (final int size : SIZES) {
+                        final List<Integer> values = new Random(size).ints(size).boxed().collect(Collectors.toList());
+                        for (final int cost : COSTS) {
+                            for (final Mode mode : Mode.values()) {
+                                final Call call;
+                                switch (mode) {
+                                    case THREADS:
+                                        call = () -> operation.run(standalone, threads, values, cost);
+                                        break;
+                                    case MAPPER:
+                                        call = () -> operation.run(mapped, threads, values, cost);
+                                        break;
+                                    default:
+                                        call = () -> operation.stream(values, cost);
+                                }
+                                System.out.printf("%s\t%d\t%d\t%d\t%s\t%.2f%n",
+                                        operation, size, cost, threads, mode, measure(call));
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private static double overhead(final IterativeParallelism ip, final int threads, final List<Integer> values) throws InterruptedException {
+        for (int i = 0; i < WARMUP_CALLS; i++) {
+            ip.maximum(threads, values, Comparator.naturalOrder());
+        }
+        final long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_CALLS; i++) {
+            ip.maximum(threads, values, Comparator.naturalOrder());
+        }
+        return (System.nanoTime() - start) / 1e3 / MEASURED_CALLS;
+    }
+
+    private static void overhead(final int threads) throws InterruptedException {
+        final ExecutorService pool = Executors.newFixedThreadPool(threads);
+        final ThreadFactory virtual = VirtualThreads.factory();
+        try (final ParallelMapperImpl mapper = new ParallelMapperImpl(threads)) {
+            System.out.println("size\tthreads(us)\tvirtual(us)\tpool(us)\tmapper(us)");
+            for (final int size : new int[]{10, 100, 1_000, 10_000}) {
+                final List<Integer> values = new Random(size).ints(size).boxed().collect(Collectors.toList());
+                System.out.printf("%d\t%.2f\t%s\t%.2f\t%.2f%n", size,
+                        overhead(new IterativeParallelism(), threads, values),
+                        virtual == null ? "n/a" : String.format("%.2f", overhead(new IterativeParallelism(virtual), threads, values)),
+                        overhead(new IterativeParallelism(pool), threads, values),
+                        overhead(new IterativeParallelism(mapper), threads, values));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * @return latencies of small calls in microseconds: median, 99th percentile and maximum.
+     */
+    private static double[] latencies(final ParallelMapperImpl mapper, final List<Integer> values, final int priority) throws InterruptedException {
+        final long[] times = new long[FAIRNESS_CALLS];
+        for (int i = 0; i < FAIRNESS_CALLS; i++) {
+            final long start = System.nanoTime();
+            sink = mapper.map(v -> work(v, COSTS[1]), values, priority);
+            times[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(times);
+        return new double[]{times[times.length / 2] / 1e3, times[times.length * 99 / 100] / 1e3, times[times.length - 1] / 1e3};
+    }
+
+    private static void fairness(final int threads) throws InterruptedException {
+        final List<Integer> background = new Random(BACKGROUND_SIZE).ints(BACKGROUND_SIZE).boxed().collect(Collectors.toList());
+        final List<Integer> foreground = new Random(FOREGROUND_SIZE).ints(FOREGROUND_SIZE).boxed().collect(Collectors.toList());
+        try (final ParallelMapperImpl mapper = new ParallelMapperImpl(threads)) {
+            System.out.println("threads\tbackground\tpriority\tp50(us)\tp99(us)\tmax(us)");
+            latencies(mapper, foreground, ParallelMapperImpl.DEFAULT_PRIORITY);
+            final double[] idle = latencies(mapper, foreground, ParallelMapperImpl.DEFAULT_PRIORITY);
+            System.out.printf("%d\tno\t%d\t%.2f\t%.2f\t%.2f%n", threads, ParallelMapperImpl.DEFAULT_PRIORITY, idle[0], idle[1], idle[2]);
+            for (final int priority : PRIORITIES) {
+                final Thread loader = new Thread(() -> {
+                    try {
+                        while (!Thread.interrupted()) {
+                            sink = mapper.map(v -> work(v, COSTS[1]), background);
+                        }
+                    } catch (final InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+                loader.start();
+                try {
+                    final double[] loaded = latencies(mapper, foreground, priority);
+                    System.out.printf("%d\tyes\t%d\t%.2f\t%.2f\t%.2f%n", threads, priority, loaded[0], loaded[1], loaded[2]);
+                } finally {
+                    loader.interrupt();
+                    loader.join();
+                }
+            }
+        }
+    }
+
+    public static void main(final String[] args) throws InterruptedException {
+        final String mode = args.length > 0 && !Character.isDigit(args[0].charAt(0)) ? args[0] : "suite";
+        final int skip = args.length > 0 && mode.equals(args[0]) ? 1 : 0;
+        final int[] threadCounts = args.length > skip
+                ? Arrays.stream(args, skip, args.length).mapToInt(Integer::parseInt).toArray()
+                : new int[]{1, 4, Runtime.getRuntime().availableProcessors()};
+        switch (mode) {
+            case "overhead":
+                for (final int threads : threadCounts) {
+                    overhead(threads);
+                }
+                break;
+            case "fairness":
+                for (final int threads : threadCounts) {
+                    fairness(threads);
+                }
+                break;
+            default:
+                suite(threadCounts);
+        }
+    }
+}
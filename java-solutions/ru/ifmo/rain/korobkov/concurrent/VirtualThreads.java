@@ -0,0 +1,23 @@
+package ru.ifmo.rain.korobkov.concurrent;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Access to virtual threads on runtimes that have them, without compiling against their API.
+ */
+public final class VirtualThreads {
+    private VirtualThreads() {
+    }
+
+    /**
+     * @return factory of virtual threads or {@code null} if the runtime does not support them.
+     */
+    public static ThreadFactory factory() {
+        try {
+            final Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            return (ThreadFactory) builder.getClass().getMethod("factory").invoke(builder);
+        } catch (final ReflectiveOperationException e) {
+            return null;
+        }
+    }
+}
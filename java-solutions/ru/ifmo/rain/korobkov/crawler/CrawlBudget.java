@@ -0,0 +1,76 @@
+package ru.ifmo.rain.korobkov.crawler;
+
+import info.kgeorgiy.java.advanced.crawler.Document;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToLongFunction;
+
+/**
+ * Limits of one crawl: after any of them is exhausted, no new downloads are started
+ * and the crawl returns what is downloaded so far.
+ *
+ * <p>Pages are counted when their download starts, so at most {@code maxPages} downloads are made,
+ * including failed ones. Documents do not expose their size, so bytes are counted by a size function,
+ * after download; downloads running when the limit is reached still complete.
+ */
+public class CrawlBudget {
+    /**
+     * Budget without limits.
+     */
+    public static final CrawlBudget UNLIMITED = new CrawlBudget(Long.MAX_VALUE, Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+
+    private final long maxPages;
+    private final long maxBytes;
+    private final ToLongFunction<Document> sizes;
+    private final long maxTimeNanos;
+
+    /**
+     * Creates budget of pages and time.
+     *
+     * @param maxPages maximal number of downloads.
+     * @param maxTime  maximal duration of crawl, {@code Long.MAX_VALUE} for no limit.
+     * @param unit     unit of {@code maxTime}.
+     */
+    public CrawlBudget(final long maxPages, final long maxTime, final TimeUnit unit) {
+        this(maxPages, Long.MAX_VALUE, document -> 0, maxTime, unit);
+    }
+
+    /**
+     * Creates budget of pages, bytes and time.
+     *
+     * @param maxPages maximal number of downloads.
+     * @param maxBytes maximal total size of downloaded documents.
+     * @param sizes    size of downloaded document in bytes.
+     * @param maxTime  maximal duration of crawl, {@code Long.MAX_VALUE} for no limit.
+     * @param unit     unit of {@code maxTime}.
+     */
+    public CrawlBudget(final long maxPages, final long maxBytes, final ToLongFunction<Document> sizes,
+                       final long maxTime, final TimeUnit unit) {
+        if (maxPages < 0 || maxBytes < 0 || maxTime < 0) {
+            throw new IllegalArgumentException("Budget should be non-negative");
+        }
+        this.maxPages = maxPages;
+        this.maxBytes = maxBytes;
+        this.sizes = sizes;
+        this.maxTimeNanos = maxTime == Long.MAX_VALUE ? Long.MAX_VALUE : unit.toNanos(maxTime);
+    }
+
+    long getMaxPages() {
+        return maxPages;
+    }
+
+    long getMaxBytes() {
+        return maxBytes;
+    }
+
+    long size(final Document document) {
+        return sizes.applyAsLong(document);
+    }
+
+    /**
+     * @return maximal duration of crawl in nanoseconds, {@code Long.MAX_VALUE} if it is not limited.
+     */
+    long getMaxTimeNanos() {
+        return maxTimeNanos;
+    }
+}
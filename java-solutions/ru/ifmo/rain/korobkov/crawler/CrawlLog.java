@@ -0,0 +1,303 @@
+package ru.ifmo.rain.korobkov.crawler;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+
+/**
+ * Append-only on-disk log of a crawl, used to resume it after restart.
+ *
+ * <p>Every queued, downloaded and failed URL is appended to the log with its remaining depth.
+ * A URL is logged as done only after all its links are queued, so any prefix of the log describes a consistent state.
+ * A URL is logged as queued again only when it is reached with more depth left, so the log grows linearly
+ * with the crawl and is never rewritten. No URLs are kept in memory: the state is streamed
+ * from the log by {@link #replay(Listener)}, and only fingerprints of finished URLs with their greatest depths
+ * are kept off-heap between opening and replay.
+ * The first write error stops logging and is thrown by {@link #close()}.
+ */
+class CrawlLog implements Closeable {
+    private static final int MAGIC = 0x434c4f48;
+    private static final int MAX_MESSAGE = 1 << 12;
+
+    private static final byte QUEUED = 'Q';
+    private static final byte DONE = 'D';
+    private static final byte FAILED = 'F';
+
+    private final Path file;
+    /**
+     * Length of the complete records read on open.
+     */
+    private long end = 0;
+    /**
+     * Fingerprints of URLs logged as done or failed with the greatest depth,
+     * {@code null} after replay or for a new log.
+     */
+    private VisitedSet finished;
+    private final DataOutputStream out;
+    private IOException error = null;
+
+    /**
+     * Listener of replayed records.
+     */
+    interface Listener {
+        /**
+         * Called for every queueing of URL, before it is reported as done or failed with the same depth.
+         *
+         * @param depth   remaining depth of the URL.
+         * @param pending {@code true} if the URL is neither done nor failed with at least this depth.
+         */
+        void queued(String url, int depth, boolean pending);
+
+        void done(String url);
+
+        void failed(String url, String message);
+    }
+
+    /**
+     * Opens log of crawl of {@code url} up to {@code depth}.
+     * Existing log is checked and its partially written last record is cut off.
+     *
+     * @throws IOException if log cannot be read or written.
+     * @throws IllegalArgumentException if existing log belongs to another crawl.
+     */
+    CrawlLog(final Path file, final String url, final int depth) throws IOException {
+        this.file = file;
+        if (Files.exists(file) && scan(url, depth)) {
+            try (final FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                channel.truncate(end);
+            }
+            out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file, StandardOpenOption.APPEND)));
+        } else {
+            out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)));
+            out.writeInt(MAGIC);
+            writeString(out, url);
+            out.writeInt(depth);
+            out.flush();
+        }
+    }
+
+    /**
+     * Checks header of the log, finds its complete records and fingerprints of finished URLs.
+     *
+     * @return {@code false} if the header was not completely written.
+     */
+    private boolean scan(final String url, final int depth) throws IOException {
+        try (final Reader in = new Reader()) {
+            if (!in.readHeader(url, depth)) {
+                return false;
+            }
+            finished = VisitedSet.fingerprints();
+            while (true) {
+                end = in.position;
+                final byte type = in.readByte();
+                final String logged = in.readString();
+                final int remaining = in.readInt();
+                switch (type) {
+                    case QUEUED:
+                        break;
+                    case DONE:
+                        finished.add(logged, remaining);
+                        break;
+                    case FAILED:
+                        in.readString();
+                        finished.add(logged, remaining);
+                        break;
+                    default:
+                        throw new IOException("Corrupted log " + file);
+                }
+            }
+        } catch (final EOFException e) {
+            // Log ends here, possibly with a partially written record
+            return end > 0;
+        }
+    }
+
+    /**
+     * Streams records of the log read on open to {@code listener}.
+     * Records appended since are not replayed.
+     *
+     * @return {@code false} if the log has no records.
+     * @throws IOException if log cannot be read.
+     */
+    boolean replay(final Listener listener) throws IOException {
+        if (finished == null) {
+            return false;
+        }
+        try (final Reader in = new Reader()) {
+            in.readHeader();
+            final boolean replayed = in.position < end;
+            while (in.position < end) {
+                final byte type = in.readByte();
+                final String logged = in.readString();
+                final int depth = in.readInt();
+                switch (type) {
+                    case QUEUED:
+                        // URL is queued with growing depths, so adding it to finished URLs only checks them
+                        listener.queued(logged, depth, finished.add(logged, depth));
+                        break;
+                    case DONE:
+                        listener.done(logged);
+                        break;
+                    case FAILED:
+                        listener.failed(logged, in.readString());
+                        break;
+                    default:
+                        throw new IOException("Corrupted log " + file);
+                }
+            }
+            return replayed;
+        } finally {
+            finished = null;
+        }
+    }
+
+    /**
+     * Writes string as length and UTF-8 bytes, as {@link DataOutput#writeUTF} is limited to 64K bytes.
+     */
+    static void writeString(final DataOutput out, final String string) throws IOException {
+        final byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Reads string written by {@link #writeString}.
+     */
+    static String readString(final DataInput in) throws IOException {
+        return new String(readStringBytes(in), StandardCharsets.UTF_8);
+    }
+
+    private static byte[] readStringBytes(final DataInput in) throws IOException {
+        final int length = in.readInt();
+        if (length < 0) {
+            throw new IOException("Negative string length: " + length);
+        }
+        final byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    /**
+     * Reader of the log that counts read bytes.
+     */
+    private class Reader implements Closeable {
+        private final DataInputStream in;
+        private long position = 0;
+
+        Reader() throws IOException {
+            in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)));
+        }
+
+        /**
+         * @return {@code false} if the header is not completely written.
+         */
+        boolean readHeader(final String url, final int depth) throws IOException {
+            try {
+                if (readInt() != MAGIC) {
+                    throw new IOException("Unsupported log format " + file);
+                }
+                if (!url.equals(readString()) || depth != readInt()) {
+                    throw new IllegalArgumentException("Log " + file + " belongs to another crawl");
+                }
+                return true;
+            } catch (final EOFException e) {
+                return false;
+            }
+        }
+
+        void readHeader() throws IOException {
+            readInt();
+            readString();
+            readInt();
+        }
+
+        byte readByte() throws IOException {
+            position += Byte.BYTES;
+            return in.readByte();
+        }
+
+        int readInt() throws IOException {
+            position += Integer.BYTES;
+            return in.readInt();
+        }
+
+        String readString() throws IOException {
+            final byte[] bytes = readStringBytes(in);
+            position += Integer.BYTES + bytes.length;
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    @FunctionalInterface
+    private interface Record {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private void append(final Record record) {
+        if (error != null) {
+            return;
+        }
+        try {
+            record.write(out);
+        } catch (final IOException e) {
+            error = e;
+        }
+    }
+
+    synchronized void queued(final Collection<String> urls, final int depth) {
+        for (final String url : urls) {
+            append(log -> {
+                log.writeByte(QUEUED);
+                writeString(log, url);
+                log.writeInt(depth);
+            });
+        }
+    }
+
+    synchronized void done(final String url, final int depth) {
+        append(log -> {
+            log.writeByte(DONE);
+            writeString(log, url);
+            log.writeInt(depth);
+        });
+    }
+
+    synchronized void failed(final String url, final int depth, final IOException error) {
+        final String message = String.valueOf(error.getMessage());
+        final String truncated = message.length() > MAX_MESSAGE ? message.substring(0, MAX_MESSAGE) : message;
+        append(log -> {
+            log.writeByte(FAILED);
+            writeString(log, url);
+            log.writeInt(depth);
+            writeString(log, truncated);
+        });
+    }
+
+    /**
+     * Closes the log.
+     *
+     * @throws IOException if any write to the log failed.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            out.close();
+        } catch (final IOException e) {
+            if (error == null) {
+                error = e;
+            }
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package ru.ifmo.rain.korobkov.crawler;
+
+import info.kgeorgiy.java.advanced.crawler.Result;
+
+import java.io.IOException;
+
+/**
+ * Thrown when a crawl completed, but its log could not be written, so it cannot be resumed from the log.
+ */
+public class CrawlLogException extends IOException {
+    private final transient Result result;
+
+    public CrawlLogException(final IOException e, final Result result) {
+        super("Crawl log is not written: " + e.getMessage(), e);
+        this.result = result;
+    }
+
+    /**
+     * @return result of the crawl.
+     */
+    public Result getResult() {
+        return result;
+    }
+}
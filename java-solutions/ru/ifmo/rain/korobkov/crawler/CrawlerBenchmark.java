@@ -0,0 +1,130 @@
+package ru.ifmo.rain.korobkov.crawler;
+
+import info.kgeorgiy.java.advanced.crawler.Crawler;
+import info.kgeorgiy.java.advanced.crawler.Document;
+import info.kgeorgiy.java.advanced.crawler.Downloader;
+import info.kgeorgiy.java.advanced.crawler.Result;
+import ru.ifmo.rain.korobkov.concurrent.VirtualThreads;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.function.Supplier;
+
+/**
+ * Throughput benchmarks of {@link WebCrawler} on simulated sites.
+ *
+ * <p>Usage: {@code CrawlerBenchmark [latency [latencyMillis [limit...]] | dense [links...]]}.
+ * <ul>
+ *     <li>{@code latency} (default) crawls a site with high download latency, for every limit
+ *     with a pool of {@code limit} downloading threads and with a thread per download limited
+ *     to {@code limit} concurrent downloads, on virtual threads if the runtime supports them;</li>
+ *     <li>{@code dense} crawls sites with instant downloads and many links per page,
+ *     where the crawler's own scheduling dominates.</li>
+ * </ul>
+ */
+public class CrawlerBenchmark {
+    private static final int PAGES = 20_000;
+    private static final int HOSTS = 100;
+    private static final int LINKS = 10;
+    private static final int DEPTH = 4;
+    private static final int EXTRACTORS = 4;
+    private static final int PER_HOST = 1_000;
+
+    private static final int DENSE_PAGES = 50_000;
+    private static final int DENSE_DEPTH = 3;
+    private static final int DENSE_THREADS = 8;
+    private static final int[] DENSE_LINKS = {100, 300};
+    private static final int REPEATS = 3;
+
+    /**
+     * Downloader of a random site: every page has {@code links} links to random pages
+     * and is downloaded in {@code latency} milliseconds.
+     */
+    private static class SimulatedDownloader implements Downloader {
+        private final long latency;
+        private final int[][] links;
+
+        SimulatedDownloader(final long latency, final int pages, final int links) {
+            this.latency = latency;
+            this.links = new int[pages][links];
+            final Random random = new Random(pages);
+            for (final int[] page : this.links) {
+                for (int i = 0; i < links; i++) {
+                    page[i] = random.nextInt(pages);
+                }
+            }
+        }
+
+        static String url(final int page) {
+            return "http://host" + page % HOSTS + ".example.com/" + page;
+        }
+
+        @Override
+        public Document download(final String url) throws IOException {
+            if (latency > 0) {
+                try {
+                    Thread.sleep(latency);
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException(e);
+                }
+            }
+            final int page = Integer.parseInt(url.substring(url.lastIndexOf('/') + 1));
+            return () -> {
+                final List<String> urls = new ArrayList<>(links[page].length);
+                for (final int link : links[page]) {
+                    urls.add(url(link));
+                }
+                return urls;
+            };
+        }
+    }
+
+    private static void measure(final String mode, final int limit, final int depth, final Supplier<Crawler> crawlers) {
+        try (final Crawler crawler = crawlers.get()) {
+            final long start = System.nanoTime();
+            final Result result = crawler.download(SimulatedDownloader.url(0), depth);
+            final double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("%s\t%d\t%d\t%.2f\t%.1f%n", mode, limit, result.getDownloaded().size(),
+                    seconds, result.getDownloaded().size() / seconds);
+        }
+    }
+
+    private static void dense(final int[] linkCounts) {
+        System.out.println("mode\tlinks\tpages\ttime(s)\tpages/s");
+        for (final int links : linkCounts) {
+            final Downloader downloader = new SimulatedDownloader(0, DENSE_PAGES, links);
+            for (int i = 0; i < REPEATS; i++) {
+                measure("dense", links, DENSE_DEPTH,
+                        () -> new WebCrawler(downloader, DENSE_THREADS, DENSE_THREADS, PER_HOST));
+            }
+        }
+    }
+
+    public static void main(final String[] args) {
+        if (args.length > 0 && "dense".equals(args[0])) {
+            dense(args.length > 1 ? Arrays.stream(args, 1, args.length).mapToInt(Integer::parseInt).toArray() : DENSE_LINKS);
+            return;
+        }
+        final int skip = args.length > 0 && "latency".equals(args[0]) ? 1 : 0;
+        final long latency = args.length > skip ? Long.parseLong(args[skip]) : 50;
+        final int[] limits = args.length > skip + 1
+                ? Arrays.stream(args, skip + 1, args.length).mapToInt(Integer::parseInt).toArray()
+                : new int[]{16, 256, 4096};
+        final Downloader downloader = new SimulatedDownloader(latency, PAGES, LINKS);
+        final ThreadFactory virtual = VirtualThreads.factory();
+        final ThreadFactory factory = virtual != null ? virtual : Executors.defaultThreadFactory();
+        final String perTask = virtual != null ? "virtual" : "thread-per-task";
+
+        System.out.println("mode\tlimit\tpages\ttime(s)\tpages/s");
+        for (final int limit : limits) {
+            measure("pool", limit, DEPTH, () -> new WebCrawler(downloader, limit, EXTRACTORS, PER_HOST));
+            measure(perTask, limit, DEPTH, () -> new WebCrawler(downloader, factory, limit, PER_HOST));
+        }
+    }
+}
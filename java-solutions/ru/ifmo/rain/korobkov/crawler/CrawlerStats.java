@@ -0,0 +1,241 @@
+package ru.ifmo.rain.korobkov.crawler;
+
+import ru.ifmo.rain.korobkov.concurrent.LatencyHistogram;
+
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Statistics of {@link WebCrawler}.
+ * Counters are updated by crawler threads without locking, host queues are read from running crawls on demand.
+ */
+public class CrawlerStats implements CrawlerStatsMBean {
+    /**
+     * Number of buckets of latency histograms.
+     */
+    public static final int BUCKETS = LatencyHistogram.BUCKETS;
+
+    private final WebCrawler crawler;
+    private final LatencyHistogram queueLatency = new LatencyHistogram();
+    private final LatencyHistogram downloadLatency = new LatencyHistogram();
+    private final LatencyHistogram extractQueueLatency = new LatencyHistogram();
+    private final LatencyHistogram extractLatency = new LatencyHistogram();
+    private final LongAdder downloadedPages = new LongAdder();
+    private final LongAdder downloadErrors = new LongAdder();
+    private final LongAdder extractErrors = new LongAdder();
+    private volatile long since = System.nanoTime();
+
+    CrawlerStats(final WebCrawler crawler) {
+        this.crawler = crawler;
+    }
+
+    void downloadStarted(final long queueNanos) {
+        queueLatency.record(queueNanos);
+    }
+
+    void downloadFinished(final boolean succeeded, final long nanos) {
+        (succeeded ? downloadedPages : downloadErrors).increment();
+        downloadLatency.record(nanos);
+    }
+
+    void extractStarted(final long queueNanos) {
+        extractQueueLatency.record(queueNanos);
+    }
+
+    void extractFinished(final boolean succeeded, final long nanos) {
+        if (!succeeded) {
+            extractErrors.increment();
+        }
+        extractLatency.record(nanos);
+    }
+
+    private static int sum(final Map<String, Integer> values) {
+        return values.values().stream().mapToInt(Integer::intValue).sum();
+    }
+
+    @Override
+    public int getActiveCrawls() {
+        return crawler.activeCrawls();
+    }
+
+    @Override
+    public int getQueuedDownloads() {
+        return sum(getHostQueueLengths());
+    }
+
+    @Override
+    public int getActiveDownloads() {
+        return sum(getHostConnections());
+    }
+
+    @Override
+    public Map<String, Integer> getHostQueueLengths() {
+        return crawler.hostQueueLengths();
+    }
+
+    @Override
+    public Map<String, Integer> getHostConnections() {
+        return crawler.hostConnections();
+    }
+
+    @Override
+    public long getDownloadedPages() {
+        return downloadedPages.sum();
+    }
+
+    @Override
+    public double getPagesPerSecond() {
+        return getDownloadedPages() * 1e9 / Math.max(1, System.nanoTime() - since);
+    }
+
+    @Override
+    public long getDownloadErrors() {
+        return downloadErrors.sum();
+    }
+
+    @Override
+    public long getExtractErrors() {
+        return extractErrors.sum();
+    }
+
+    @Override
+    public long[] getQueueLatencyHistogram() {
+        return queueLatency.toArray();
+    }
+
+    @Override
+    public long[] getDownloadLatencyHistogram() {
+        return downloadLatency.toArray();
+    }
+
+    @Override
+    public long[] getExtractQueueLatencyHistogram() {
+        return extractQueueLatency.toArray();
+    }
+
+    @Override
+    public long[] getExtractLatencyHistogram() {
+        return extractLatency.toArray();
+    }
+
+    @Override
+    public void reset() {
+        since = System.nanoTime();
+        queueLatency.reset();
+        downloadLatency.reset();
+        extractQueueLatency.reset();
+        extractLatency.reset();
+        downloadedPages.reset();
+        downloadErrors.reset();
+        extractErrors.reset();
+    }
+
+    /**
+     * @return current values of all statistics.
+     */
+    public Snapshot snapshot() {
+        return new Snapshot(this);
+    }
+
+    /**
+     * Values of crawler statistics at some moment.
+     * Values read concurrently with crawling may be slightly inconsistent with each other.
+     */
+    public static class Snapshot {
+        private final long elapsedNanos;
+        private final int activeCrawls;
+        private final Map<String, Integer> hostQueueLengths;
+        private final Map<String, Integer> hostConnections;
+        private final long downloadedPages;
+        private final long downloadErrors;
+        private final long extractErrors;
+        private final long[] queueLatency;
+        private final long[] downloadLatency;
+        private final long[] extractQueueLatency;
+        private final long[] extractLatency;
+
+        private Snapshot(final CrawlerStats stats) {
+            elapsedNanos = System.nanoTime() - stats.since;
+            activeCrawls = stats.getActiveCrawls();
+            hostQueueLengths = stats.getHostQueueLengths();
+            hostConnections = stats.getHostConnections();
+            downloadedPages = stats.getDownloadedPages();
+            downloadErrors = stats.getDownloadErrors();
+            extractErrors = stats.getExtractErrors();
+            queueLatency = stats.getQueueLatencyHistogram();
+            downloadLatency = stats.getDownloadLatencyHistogram();
+            extractQueueLatency = stats.getExtractQueueLatencyHistogram();
+            extractLatency = stats.getExtractLatencyHistogram();
+        }
+
+        /**
+         * @return time since start or last reset of statistics, in nanoseconds.
+         */
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        public int getActiveCrawls() {
+            return activeCrawls;
+        }
+
+        public int getQueuedDownloads() {
+            return sum(hostQueueLengths);
+        }
+
+        public int getActiveDownloads() {
+            return sum(hostConnections);
+        }
+
+        public Map<String, Integer> getHostQueueLengths() {
+            return hostQueueLengths;
+        }
+
+        public Map<String, Integer> getHostConnections() {
+            return hostConnections;
+        }
+
+        public long getDownloadedPages() {
+            return downloadedPages;
+        }
+
+        public long getDownloadErrors() {
+            return downloadErrors;
+        }
+
+        public long getExtractErrors() {
+            return extractErrors;
+        }
+
+        /**
+         * @return number of downloaded pages per second since start or last reset of statistics.
+         */
+        public double getPagesPerSecond() {
+            return downloadedPages * 1e9 / Math.max(1, elapsedNanos);
+        }
+
+        /**
+         * @param previous earlier snapshot of the same statistics, taken after last reset.
+         * @return number of downloaded pages per second since {@code previous}.
+         */
+        public double getPagesPerSecond(final Snapshot previous) {
+            return (downloadedPages - previous.downloadedPages) * 1e9 / Math.max(1, elapsedNanos - previous.elapsedNanos);
+        }
+
+        public long[] getQueueLatencyHistogram() {
+            return queueLatency.clone();
+        }
+
+        public long[] getDownloadLatencyHistogram() {
+            return downloadLatency.clone();
+        }
+
+        public long[] getExtractQueueLatencyHistogram() {
+            return extractQueueLatency.clone();
+        }
+
+        public long[] getExtractLatencyHistogram() {
+            return extractLatency.clone();
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package ru.ifmo.rain.korobkov.crawler;
+
+import java.util.Map;
+
+/**
+ * Management interface of {@link WebCrawler} statistics.
+ *
+ * <p>Latency histograms have {@link CrawlerStats#BUCKETS} buckets:
+ * bucket {@code i} counts latencies in {@code [2^(i-1), 2^i)} nanoseconds, bucket {@code 0} counts zero latencies.
+ */
+public interface CrawlerStatsMBean {
+    /**
+     * @return number of running crawls.
+     */
+    int getActiveCrawls();
+
+    /**
+     * @return number of downloads waiting in host queues of running crawls.
+     */
+    int getQueuedDownloads();
+
+    /**
+     * @return number of running downloads, including ones waiting for a downloading thread.
+     */
+    int getActiveDownloads();
+
+    /**
+     * @return number of downloads waiting in queue of every host of running crawls.
+     */
+    Map<String, Integer> getHostQueueLengths();
+
+    /**
+     * @return number of running downloads from every host of running crawls.
+     */
+    Map<String, Integer> getHostConnections();
+
+    /**
+     * @return number of downloaded pages.
+     */
+    long getDownloadedPages();
+
+    /**
+     * @return number of downloaded pages per second since start or last reset.
+     */
+    double getPagesPerSecond();
+
+    /**
+     * @return number of failed downloads.
+     */
+    long getDownloadErrors();
+
+    /**
+     * @return number of failed link extractions.
+     */
+    long getExtractErrors();
+
+    /**
+     * @return histogram of time from queueing of download to its start.
+     */
+    long[] getQueueLatencyHistogram();
+
+    /**
+     * @return histogram of time spent in the downloader, including failed downloads.
+     */
+    long[] getDownloadLatencyHistogram();
+
+    /**
+     * @return histogram of time from download to start of link extraction.
+     */
+    long[] getExtractQueueLatencyHistogram();
+
+    /**
+     * @return histogram of time spent extracting links, including failed extractions.
+     */
+    long[] getExtractLatencyHistogram();
+
+    /**
+     * Clears counters and histograms.
+     */
+    void reset();
+}
@@ -0,0 +1,307 @@
+package ru.ifmo.rain.korobkov.crawler;
+
+import info.kgeorgiy.java.advanced.crawler.Document;
+import info.kgeorgiy.java.advanced.crawler.Downloader;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * {@link Downloader} that caches links of downloaded documents in memory and, optionally, on disk.
+ *
+ * <p>Links are extracted right after download and kept for {@code ttl}. Fresh entries are served without
+ * calling the underlying downloader. Stale and missing ones are downloaded again; if that fails,
+ * a stale entry is served instead of the error, like HTTP {@code stale-if-error}.
+ * Memory tier keeps at most {@code memoryEntries} recently used entries, disk tier keeps
+ * recently used files up to {@code diskBytes} in total. Documents whose links cannot be extracted are not cached.
+ */
+public class DocumentCache implements Downloader {
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final int MAGIC = 0x44434631;
+
+    private final Downloader downloader;
+    private final Path directory;
+    private final long ttlMillis;
+    private final long diskBytes;
+    private final Map<String, Entry> memory;
+    private final LinkedHashMap<String, Long> disk = new LinkedHashMap<>(16, 0.75f, true);
+    private long diskUsed = 0;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Cached links of a document.
+     */
+    private static class Entry {
+        private final String url;
+        private final long fetched;
+        private final List<String> links;
+
+        Entry(final String url, final long fetched, final List<String> links) {
+            this.url = url;
+            this.fetched = fetched;
+            this.links = links;
+        }
+    }
+
+    /**
+     * Creates cache in memory only.
+     *
+     * @param downloader    underlying downloader.
+     * @param memoryEntries maximal number of entries in memory.
+     * @param ttl           time entries are fresh.
+     * @param unit          unit of {@code ttl}.
+     */
+    public DocumentCache(final Downloader downloader, final int memoryEntries, final long ttl, final TimeUnit unit) {
+        this.downloader = downloader;
+        this.directory = null;
+        this.ttlMillis = unit.toMillis(ttl);
+        this.diskBytes = 0;
+        this.memory = lru(memoryEntries);
+    }
+
+    /**
+     * Creates cache in memory backed by files in {@code directory}.
+     * Files left by previous runs are reused.
+     *
+     * @param downloader    underlying downloader.
+     * @param directory     directory for cache files.
+     * @param memoryEntries maximal number of entries in memory.
+     * @param diskBytes     maximal total size of cache files.
+     * @param ttl           time entries are fresh.
+     * @param unit          unit of {@code ttl}.
+     * @throws IOException if directory cannot be read or created.
+     */
+    public DocumentCache(final Downloader downloader, final Path directory, final int memoryEntries,
+                         final long diskBytes, final long ttl, final TimeUnit unit) throws IOException {
+        this.downloader = downloader;
+        this.directory = directory;
+        this.ttlMillis = unit.toMillis(ttl);
+        this.diskBytes = diskBytes;
+        this.memory = lru(memoryEntries);
+        Files.createDirectories(directory);
+        final List<Path> files;
+        try (final Stream<Path> list = Files.list(directory)) {
+            files = list.filter(Files::isRegularFile).collect(Collectors.toList());
+        }
+        final Map<Path, FileTime> used = new HashMap<>();
+        for (final Iterator<Path> it = files.iterator(); it.hasNext(); ) {
+            final Path file = it.next();
+            if (file.getFileName().toString().endsWith(TEMP_SUFFIX)) {
+                Files.deleteIfExists(file);
+                it.remove();
+            } else {
+                used.put(file, Files.getLastModifiedTime(file));
+            }
+        }
+        files.sort(Comparator.comparing(used::get));
+        for (final Path file : files) {
+            final long size = Files.size(file);
+            disk.put(file.getFileName().toString(), size);
+            diskUsed += size;
+        }
+        evictDisk();
+    }
+
+    private static Map<String, Entry> lru(final int entries) {
+        return new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, Entry> eldest) {
+                return size() > entries;
+            }
+        };
+    }
+
+    @Override
+    public Document download(final String url) throws IOException {
+        final Entry cached = lookup(url);
+        if (cached != null && System.currentTimeMillis() - cached.fetched < ttlMillis) {
+            hits.increment();
+            return new CachedDocument(cached.links);
+        }
+        misses.increment();
+        final Document document;
+        try {
+            document = downloader.download(url);
+        } catch (final IOException e) {
+            if (cached != null) {
+                return new CachedDocument(cached.links);
+            }
+            throw e;
+        }
+        final List<String> links;
+        try {
+            links = List.copyOf(document.extractLinks());
+        } catch (final IOException e) {
+            return document;
+        }
+        final Entry entry = new Entry(url, System.currentTimeMillis(), links);
+        store(entry);
+        return () -> entry.links;
+    }
+
+    /**
+     * Document served from cache without calling the underlying downloader.
+     */
+    private static class CachedDocument implements Document {
+        private final List<String> links;
+
+        CachedDocument(final List<String> links) {
+            this.links = links;
+        }
+
+        @Override
+        public List<String> extractLinks() {
+            return links;
+        }
+    }
+
+    /**
+     * @return whether {@code document} was served from a cache without calling the underlying downloader.
+     */
+    static boolean isCached(final Document document) {
+        return document instanceof CachedDocument;
+    }
+
+    private Entry lookup(final String url) {
+        synchronized (memory) {
+            final Entry entry = memory.get(url);
+            if (entry != null) {
+                return entry;
+            }
+        }
+        if (directory == null) {
+            return null;
+        }
+        final Entry entry = readFile(url);
+        if (entry != null) {
+            synchronized (memory) {
+                memory.put(url, entry);
+            }
+        }
+        return entry;
+    }
+
+    private void store(final Entry entry) {
+        synchronized (memory) {
+            memory.put(entry.url, entry);
+        }
+        if (directory != null) {
+            writeFile(entry);
+        }
+    }
+
+    private static String fileName(final String url) {
+        return Long.toHexString(FingerprintSet.fingerprint(url));
+    }
+
+    /**
+     * @return entry stored for {@code url} or {@code null} if there is none or it cannot be read.
+     */
+    private Entry readFile(final String url) {
+        final String name = fileName(url);
+        synchronized (disk) {
+            if (disk.get(name) == null) {
+                return null;
+            }
+        }
+        final Path file = directory.resolve(name);
+        try (final DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || !url.equals(CrawlLog.readString(in))) {
+                return null;
+            }
+            final long fetched = in.readLong();
+            final int count = in.readInt();
+            final List<String> links = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                links.add(CrawlLog.readString(in));
+            }
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            return new Entry(url, fetched, Collections.unmodifiableList(links));
+        } catch (final IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Writes entry to a temporary file and moves it in place. Failures only make the entry uncached.
+     */
+    private void writeFile(final Entry entry) {
+        final String name = fileName(entry.url);
+        final Path file = directory.resolve(name);
+        final Path temp;
+        try {
+            temp = Files.createTempFile(directory, name, TEMP_SUFFIX);
+        } catch (final IOException e) {
+            return;
+        }
+        boolean moved = false;
+        try {
+            try (final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                CrawlLog.writeString(out, entry.url);
+                out.writeLong(entry.fetched);
+                out.writeInt(entry.links.size());
+                for (final String link : entry.links) {
+                    CrawlLog.writeString(out, link);
+                }
+            }
+            final long size = Files.size(temp);
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            moved = true;
+            synchronized (disk) {
+                final Long old = disk.put(name, size);
+                diskUsed += size - (old == null ? 0 : old);
+                evictDisk();
+            }
+        } catch (final IOException e) {
+            // Entry stays in memory only
+        } finally {
+            if (!moved) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (final IOException e) {
+                    // Removed on next start
+                }
+            }
+        }
+    }
+
+    private void evictDisk() {
+        synchronized (disk) {
+            final Iterator<Map.Entry<String, Long>> it = disk.entrySet().iterator();
+            while (diskUsed > diskBytes && it.hasNext()) {
+                final Map.Entry<String, Long> eldest = it.next();
+                try {
+                    Files.deleteIfExists(directory.resolve(eldest.getKey()));
+                } catch (final IOException e) {
+                    continue;
+                }
+                diskUsed -= eldest.getValue();
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * @return number of downloads served from cache.
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return number of downloads passed to the underlying downloader.
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+}
@@ -0,0 +1,188 @@
+package ru.ifmo.rain.korobkov.crawler;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * {@link VisitedSet} of 64-bit URL fingerprints in an off-heap open-addressing table with linear probing.
+ * Every slot also keeps the greatest depth the URL was added with, 12 bytes per slot in total.
+ *
+ * <p>Slots are claimed by compare-and-set, so additions run concurrently under the read lock;
+ * the table is doubled under the write lock when it is {@link #LOAD_FACTOR} full.
+ * Depth of a claimed slot is published right after its fingerprint; additions of the same URL
+ * spin until it is, then raise it by compare-and-set.
+ * Probability of a false match among {@code n} URLs is about {@code n^2 / 2^65}.
+ */
+public class FingerprintSet implements VisitedSet {
+    private static final VarHandle SLOTS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+    private static final VarHandle DEPTHS = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.nativeOrder());
+    private static final int INITIAL_CAPACITY = 1 << 10;
+    /**
+     * Largest power of two number of slots whose table fits in a {@link ByteBuffer}.
+     */
+    private static final int MAX_CAPACITY = 1 << 27;
+    private static final double LOAD_FACTOR = 0.7;
+    private static final long EMPTY = 0;
+    /**
+     * Depth of a slot whose fingerprint is set, but depth is not yet. Depths are stored incremented by one.
+     */
+    private static final int CLAIMED = 0;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final AtomicLong size = new AtomicLong();
+    private ByteBuffer slots;
+    private ByteBuffer depths;
+    private int capacity;
+
+    /**
+     * Creates empty set.
+     */
+    public FingerprintSet() {
+        allocate(INITIAL_CAPACITY);
+    }
+
+    private void allocate(final int capacity) {
+        this.capacity = capacity;
+        slots = ByteBuffer.allocateDirect(Math.multiplyExact(capacity, Long.BYTES)).order(ByteOrder.nativeOrder());
+        depths = ByteBuffer.allocateDirect(Math.multiplyExact(capacity, Integer.BYTES)).order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Computes FNV-1a hash of URL followed by the MurmurHash3 finalizer. Never returns {@link #EMPTY}.
+     */
+    static long fingerprint(final String url) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < url.length(); i++) {
+            hash = (hash ^ url.charAt(i)) * 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash == EMPTY ? 1 : hash;
+    }
+
+    @Override
+    public boolean add(final String url) {
+        return add(url, 0);
+    }
+
+    @Override
+    public boolean add(final String url, final int depth) {
+        if (depth < 0) {
+            throw new IllegalArgumentException("Negative depth: " + depth);
+        }
+        final long fingerprint = fingerprint(url);
+        final int stored = Math.min(depth, Integer.MAX_VALUE - 1) + 1;
+        while (true) {
+            lock.readLock().lock();
+            try {
+                if (size.get() < capacity * LOAD_FACTOR) {
+                    final int index = find(slots, capacity, fingerprint);
+                    if (index >= 0) {
+                        return raise(index, stored);
+                    }
+                    DEPTHS.setVolatile(depths, ~index * Integer.BYTES, stored);
+                    size.incrementAndGet();
+                    return true;
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+            grow();
+        }
+    }
+
+    /**
+     * Finds slot of the fingerprint, claiming an empty one if there is none.
+     *
+     * @return index of the slot, or {@code ~index} if it was claimed by this call.
+     */
+    private static int find(final ByteBuffer slots, final int capacity, final long fingerprint) {
+        final int mask = capacity - 1;
+        int index = (int) fingerprint & mask;
+        while (true) {
+            final long current = (long) SLOTS.getVolatile(slots, index * Long.BYTES);
+            if (current == fingerprint) {
+                return index;
+            }
+            if (current == EMPTY) {
+                if (SLOTS.compareAndSet(slots, index * Long.BYTES, EMPTY, fingerprint)) {
+                    return ~index;
+                }
+                continue;
+            }
+            index = (index + 1) & mask;
+        }
+    }
+
+    /**
+     * Raises stored depth of the slot to {@code stored}.
+     *
+     * @return {@code false} if the slot already has at least this depth.
+     */
+    private boolean raise(final int index, final int stored) {
+        while (true) {
+            final int current = (int) DEPTHS.getVolatile(depths, index * Integer.BYTES);
+            if (current == CLAIMED) {
+                Thread.onSpinWait();
+                continue;
+            }
+            if (current >= stored) {
+                return false;
+            }
+            if (DEPTHS.compareAndSet(depths, index * Integer.BYTES, current, stored)) {
+                return true;
+            }
+        }
+    }
+
+    private void grow() {
+        lock.writeLock().lock();
+        try {
+            if (size.get() < capacity * LOAD_FACTOR) {
+                return;
+            }
+            if (capacity >= MAX_CAPACITY) {
+                throw new IllegalStateException("Fingerprint set is full: " + size.get() + " URLs");
+            }
+            final ByteBuffer oldSlots = slots;
+            final ByteBuffer oldDepths = depths;
+            final int oldCapacity = capacity;
+            allocate(capacity * 2);
+            for (int i = 0; i < oldCapacity; i++) {
+                final long fingerprint = oldSlots.getLong(i * Long.BYTES);
+                if (fingerprint != EMPTY) {
+                    depths.putInt(~find(slots, capacity, fingerprint) * Integer.BYTES, oldDepths.getInt(i * Integer.BYTES));
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return number of fingerprints in the set.
+     */
+    public long size() {
+        return size.get();
+    }
+
+    /**
+     * @return size of the off-heap table in bytes.
+     */
+    public long tableBytes() {
+        lock.readLock().lock();
+        try {
+            return (long) capacity * (Long.BYTES + Integer.BYTES);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+}
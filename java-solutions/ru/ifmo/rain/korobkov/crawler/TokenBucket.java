@@ -0,0 +1,64 @@
+package ru.ifmo.rain.korobkov.crawler;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket rate limiter.
+ *
+ * <p>Implemented as generic cell rate algorithm: instead of counting tokens the bucket keeps
+ * theoretical arrival time of the next request, which is advanced by one interval per taken token
+ * with a single compare-and-set. A request is allowed if it is at most {@code burst - 1} intervals early.
+ */
+class TokenBucket {
+    /**
+     * Bucket that never limits requests.
+     */
+    static final TokenBucket UNLIMITED = new TokenBucket(Double.POSITIVE_INFINITY, 1);
+
+    private final long intervalNanos;
+    private final long toleranceNanos;
+    private final AtomicLong arrival = new AtomicLong(System.nanoTime());
+
+    /**
+     * Creates bucket of {@code burst} tokens refilled at {@code perSecond} tokens per second.
+     */
+    TokenBucket(final double perSecond, final int burst) {
+        if (!(perSecond > 0) || burst < 1) {
+            throw new IllegalArgumentException("Rate and burst should be positive");
+        }
+        this.intervalNanos = (long) (1e9 / perSecond);
+        this.toleranceNanos = (burst - 1) * intervalNanos;
+    }
+
+    /**
+     * @return nanoseconds until a token is available, {@code 0} if it is available now.
+     */
+    long delay() {
+        if (intervalNanos == 0) {
+            return 0;
+        }
+        return Math.max(0, arrival.get() - toleranceNanos - System.nanoTime());
+    }
+
+    /**
+     * Takes a token if it is available.
+     *
+     * @return {@code 0} if the token is taken, otherwise nanoseconds until it is available.
+     */
+    long tryAcquire() {
+        if (intervalNanos == 0) {
+            return 0;
+        }
+        while (true) {
+            final long now = System.nanoTime();
+            final long expected = arrival.get();
+            final long wait = expected - toleranceNanos - now;
+            if (wait > 0) {
+                return wait;
+            }
+            if (arrival.compareAndSet(expected, (expected - now > 0 ? expected : now) + intervalNanos)) {
+                return 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package ru.ifmo.rain.korobkov.crawler;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Concurrent set of URLs that were already queued by a crawl, with the greatest remaining depth
+ * every URL was queued with.
+ */
+@FunctionalInterface
+public interface VisitedSet {
+    /**
+     * Adds URL to the set.
+     *
+     * @param url URL to add.
+     * @return {@code true} if the URL was not in the set.
+     */
+    boolean add(String url);
+
+    /**
+     * Adds URL reached with {@code depth} levels left to download.
+     * A page reached again with more depth left is downloaded again, so its links are followed deep enough.
+     * Sets that do not keep depths, like this default implementation, only report URLs that were not in the set.
+     *
+     * @param url   URL to add.
+     * @param depth non-negative remaining depth.
+     * @return {@code true} if the URL was not in the set or was added with less depth.
+     */
+    default boolean add(final String url, final int depth) {
+        return add(url);
+    }
+
+    /**
+     * Returns set that keeps full URLs.
+     *
+     * @return new empty set.
+     */
+    static VisitedSet exact() {
+        final ConcurrentMap<String, Integer> depths = new ConcurrentHashMap<>();
+        return new VisitedSet() {
+            @Override
+            public boolean add(final String url) {
+                return add(url, 0);
+            }
+
+            @Override
+            public boolean add(final String url, final int depth) {
+                Integer old = depths.putIfAbsent(url, depth);
+                while (old != null) {
+                    if (old >= depth) {
+                        return false;
+                    }
+                    if (depths.replace(url, old, depth)) {
+                        return true;
+                    }
+                    old = depths.get(url);
+                }
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Returns set that keeps 64-bit fingerprints of URLs off-heap.
+     * Distinct URLs with equal fingerprints are treated as equal.
+     *
+     * @return new empty set.
+     * @see FingerprintSet
+     */
+    static VisitedSet fingerprints() {
+        return new FingerprintSet();
+    }
+}
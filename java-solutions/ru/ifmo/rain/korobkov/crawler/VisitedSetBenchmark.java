@@ -0,0 +1,54 @@
+package ru.ifmo.rain.korobkov.crawler;
+
+import java.util.function.Supplier;
+
+/**
+ * Benchmark of memory use and speed of {@link VisitedSet} implementations.
+ *
+ * <p>Usage: {@code VisitedSetBenchmark [urls]}. Adds {@code urls} distinct URLs (default 5 000 000)
+ * to every set and reports heap and off-heap bytes per URL and nanoseconds per addition.
+ * Run with heap large enough for the exact set.
+ */
+public class VisitedSetBenchmark {
+    private static final int DEFAULT_URLS = 5_000_000;
+
+    /**
+     * Prevents sets from being collected before memory is measured.
+     */
+    private static volatile Object sink;
+
+    private static String url(final int i) {
+        return "https://host" + (i % 1000) + ".example.com/path/to/page" + i + ".html";
+    }
+
+    private static long usedHeap() {
+        final Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static void measure(final String name, final Supplier<VisitedSet> factory, final int urls) {
+        final long before = usedHeap();
+        final VisitedSet set = factory.get();
+        final long start = System.nanoTime();
+        for (int i = 0; i < urls; i++) {
+            set.add(url(i));
+        }
+        final long elapsed = System.nanoTime() - start;
+        sink = set;
+        final long heap = usedHeap() - before;
+        final long offHeap = set instanceof FingerprintSet ? ((FingerprintSet) set).tableBytes() : 0;
+        System.out.printf("%s\t%d\t%.1f\t%.1f\t%.1f%n", name, urls,
+                (double) heap / urls, (double) offHeap / urls, (double) elapsed / urls);
+        sink = null;
+    }
+
+    public static void main(final String[] args) {
+        final int urls = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_URLS;
+        System.out.println("set\turls\theap(B/url)\toff-heap(B/url)\tadd(ns)");
+        measure("exact", VisitedSet::exact, urls);
+        measure("fingerprints", VisitedSet::fingerprints, urls);
+    }
+}
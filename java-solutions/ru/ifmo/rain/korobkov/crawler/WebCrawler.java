@@ -2,28 +2,135 @@ package ru.ifmo.rain.korobkov.crawler;
 
 import info.kgeorgiy.java.advanced.crawler.*;
 
+import javax.management.JMException;
+import javax.management.ObjectName;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
 import java.net.MalformedURLException;
+import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.ArrayDeque;
-import java.util.Map;
-import java.util.Queue;
-import java.util.Set;
+import java.util.*;
 import java.util.concurrent.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.function.ToDoubleFunction;
 
 public class WebCrawler implements Crawler {
     public static final int TIMEOUT_MINUTES = 2;
+    private static final ToDoubleFunction<String> NO_SCORE = url -> 0;
+    private static final BiConsumer<Integer, Result> NO_LEVELS = (level, result) -> {};
+    private static final Predicate<Page> NO_PAGES = page -> true;
+    private static final int BURST_MILLIS = 100;
+
     private final Downloader downloader;
     private final ExecutorService downloadersPool;
     private final ExecutorService extractorsPool;
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
     private final int perHost;
+    private final double hostRequestsPerSecond;
+    private final TokenBucket requests;
+    private final Supplier<? extends VisitedSet> visitedSets;
+    private final Semaphore downloadPermits;
+    private final Set<CrawlerInfo> crawls = ConcurrentHashMap.newKeySet();
+    private final CrawlerStats stats = new CrawlerStats(this);
+    private ObjectName mBeanName = null;
 
     public WebCrawler(final Downloader downloader, final int downloaders, final int extractors, final int perHost) {
+        this(downloader, downloaders, extractors, perHost, 0);
+    }
+
+    /**
+     * Creates crawler that adapts number of concurrent downloads from every host to the host behaviour,
+     * never exceeding {@code perHost}, and starts downloads from the same host at least {@code hostDelayMillis} apart.
+     *
+     * @param downloader      downloader of documents.
+     * @param downloaders     number of downloading threads.
+     * @param extractors      number of link extracting threads.
+     * @param perHost         maximal number of concurrent downloads from one host.
+     * @param hostDelayMillis minimal delay between starts of downloads from one host.
+     */
+    public WebCrawler(final Downloader downloader, final int downloaders, final int extractors, final int perHost,
+                      final long hostDelayMillis) {
+        this(downloader, downloaders, extractors, perHost, hostDelayMillis, VisitedSet::exact);
+    }
+
+    /**
+     * Creates crawler that keeps visited URLs in sets created by {@code visitedSets}.
+     *
+     * @param downloader      downloader of documents.
+     * @param downloaders     number of downloading threads.
+     * @param extractors      number of link extracting threads.
+     * @param perHost         maximal number of concurrent downloads from one host.
+     * @param hostDelayMillis minimal delay between starts of downloads from one host.
+     * @param visitedSets     factory of sets of URLs visited by one crawl,
+     *                        e.g. {@link VisitedSet#fingerprints()} for very large crawls.
+     */
+    public WebCrawler(final Downloader downloader, final int downloaders, final int extractors, final int perHost,
+                      final long hostDelayMillis, final Supplier<? extends VisitedSet> visitedSets) {
+        this(downloader, downloaders, extractors, perHost, Double.POSITIVE_INFINITY,
+                hostDelayMillis > 0 ? 1000.0 / hostDelayMillis : Double.POSITIVE_INFINITY, visitedSets);
+    }
+
+    /**
+     * Creates crawler that limits rate of downloads started by all its crawls to {@code requestsPerSecond},
+     * allowing bursts of {@value #BURST_MILLIS} milliseconds worth of requests,
+     * and rate of downloads from one host to {@code hostRequestsPerSecond}, without bursts.
+     *
+     * @param downloader            downloader of documents.
+     * @param downloaders           number of downloading threads.
+     * @param extractors            number of link extracting threads.
+     * @param perHost               maximal number of concurrent downloads from one host.
+     * @param requestsPerSecond     maximal rate of downloads, {@code Double.POSITIVE_INFINITY} for no limit.
+     * @param hostRequestsPerSecond maximal rate of downloads from one host, {@code Double.POSITIVE_INFINITY} for no limit.
+     */
+    public WebCrawler(final Downloader downloader, final int downloaders, final int extractors, final int perHost,
+                      final double requestsPerSecond, final double hostRequestsPerSecond) {
+        this(downloader, downloaders, extractors, perHost, requestsPerSecond, hostRequestsPerSecond, VisitedSet::exact);
+    }
+
+    private WebCrawler(final Downloader downloader, final int downloaders, final int extractors, final int perHost,
+                       final double requestsPerSecond, final double hostRequestsPerSecond,
+                       final Supplier<? extends VisitedSet> visitedSets) {
         this.downloader = downloader;
-        downloadersPool = Executors.newFixedThreadPool(downloaders);
+        downloadersPool = new ThreadPoolExecutor(downloaders, downloaders, 0, TimeUnit.MILLISECONDS, new PriorityBlockingQueue<>());
         extractorsPool = Executors.newFixedThreadPool(extractors);
         this.perHost = perHost;
+        this.hostRequestsPerSecond = hostRequestsPerSecond;
+        this.requests = bucket(requestsPerSecond, (int) Math.min(Integer.MAX_VALUE, requestsPerSecond * BURST_MILLIS / 1000));
+        this.visitedSets = visitedSets;
+        this.downloadPermits = new Semaphore(downloaders);
+    }
+
+    /**
+     * Creates crawler that runs every download and every link extraction on its own thread.
+     * Number of concurrent downloads is limited by semaphores instead of pool sizes:
+     * at most {@code downloads} in total and at most {@code perHost} from one host.
+     * Pass {@code Thread.ofVirtual().factory()} to run them on virtual threads.
+     *
+     * @param downloader downloader of documents.
+     * @param factory    factory of threads.
+     * @param downloads  maximal number of concurrent downloads.
+     * @param perHost    maximal number of concurrent downloads from one host.
+     */
+    public WebCrawler(final Downloader downloader, final ThreadFactory factory, final int downloads, final int perHost) {
+        this.downloader = downloader;
+        downloadersPool = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 0, TimeUnit.SECONDS, new SynchronousQueue<>(), factory);
+        extractorsPool = downloadersPool;
+        this.perHost = perHost;
+        this.hostRequestsPerSecond = Double.POSITIVE_INFINITY;
+        this.requests = TokenBucket.UNLIMITED;
+        this.visitedSets = VisitedSet::exact;
+        this.downloadPermits = new Semaphore(downloads);
+    }
+
+    private static TokenBucket bucket(final double perSecond, final int burst) {
+        return perSecond == Double.POSITIVE_INFINITY ? TokenBucket.UNLIMITED : new TokenBucket(perSecond, Math.max(1, burst));
     }
 
     /**
@@ -35,96 +142,1143 @@ public class WebCrawler implements Crawler {
      */
     @Override
     public Result download(final String url, final int depth) {
-        return new CrawlerInfo().start(url, depth);
+        return new CrawlerInfo(depth, null, NO_SCORE, NO_LEVELS, NO_PAGES, CrawlBudget.UNLIMITED).start(url);
+    }
+
+    /**
+     * Downloads web site up to specified depth within {@code budget}.
+     * When the budget is exhausted, downloads that are not started yet are dropped
+     * and the pages downloaded so far are returned.
+     *
+     * @param url    start <a href="http://tools.ietf.org/html/rfc3986">URL</a>.
+     * @param depth  download depth.
+     * @param budget limits of the crawl.
+     * @return download result, partial if the budget was exhausted.
+     */
+    public Result download(final String url, final int depth, final CrawlBudget budget) {
+        return new CrawlerInfo(depth, null, NO_SCORE, NO_LEVELS, NO_PAGES, budget).start(url);
+    }
+
+    /**
+     * Downloads web site up to specified depth, shallow pages first.
+     * Pages at the same distance from the start page are downloaded in order of decreasing {@code score}.
+     * When all pages at some distance are downloaded and their links are extracted,
+     * {@code onLevel} is called with the distance and the result so far, in order of distances.
+     *
+     * @param url     start <a href="http://tools.ietf.org/html/rfc3986">URL</a>.
+     * @param depth   download depth.
+     * @param score   priority of URL among URLs at the same distance.
+     * @param onLevel listener of completed levels, called from crawler threads.
+     * @return download result.
+     */
+    public Result download(final String url, final int depth, final ToDoubleFunction<String> score,
+                           final BiConsumer<Integer, Result> onLevel) {
+        return new CrawlerInfo(depth, null, score, onLevel, NO_PAGES, CrawlBudget.UNLIMITED).start(url);
+    }
+
+    /**
+     * Downloads web site up to specified depth, persisting crawl state to {@code log}.
+     * If the log exists, the crawl is resumed: downloaded and failed pages are not downloaded again.
+     * Errors of resumed pages are restored with their messages only.
+     *
+     * @param url   start <a href="http://tools.ietf.org/html/rfc3986">URL</a>.
+     * @param depth download depth.
+     * @param log   file to keep crawl state in.
+     * @return download result.
+     * @throws CrawlLogException if the crawl completed, but the log could not be written.
+     * @throws IOException if log cannot be opened or read.
+     */
+    public Result download(final String url, final int depth, final Path log) throws IOException {
+        Result result = null;
+        try (final CrawlLog crawlLog = new CrawlLog(log, url, depth)) {
+            try {
+                result = new CrawlerInfo(depth, crawlLog, NO_SCORE, NO_LEVELS, NO_PAGES, CrawlBudget.UNLIMITED).start(url);
+            } catch (final UncheckedIOException e) {
+                throw e.getCause();
+            }
+            return result;
+        } catch (final IOException e) {
+            if (result != null) {
+                throw new CrawlLogException(e, result);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Downloaded page or download error.
+     */
+    public static class Page {
+        private final String url;
+        private final Document document;
+        private final IOException error;
+
+        Page(final String url, final Document document, final IOException error) {
+            this.url = url;
+            this.document = document;
+            this.error = error;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        /**
+         * @return downloaded document or {@code null} if this is an error.
+         */
+        public Document getDocument() {
+            return document;
+        }
+
+        /**
+         * @return download or link extraction error or {@code null} if the page was downloaded.
+         */
+        public IOException getError() {
+            return error;
+        }
+    }
+
+    /**
+     * Returns publisher of pages of web site up to specified depth.
+     * Every subscription starts a new crawl that publishes every page as soon as it is downloaded,
+     * and every error as soon as it happens; a page whose links could not be extracted is published twice,
+     * as a document and as an error. The subscriber is completed when the crawl finishes.
+     *
+     * <p>When the subscriber lags {@code buffer} pages behind, downloading threads wait for it,
+     * so a slow subscriber throttles the crawl. The crawl stops once the subscription is cancelled.
+     *
+     * @param url    start <a href="http://tools.ietf.org/html/rfc3986">URL</a>.
+     * @param depth  download depth.
+     * @param buffer maximal number of pages not yet requested by the subscriber.
+     * @return cold publisher of pages.
+     */
+    public Flow.Publisher<Page> publish(final String url, final int depth, final int buffer) {
+        return subscriber -> {
+            final SubmissionPublisher<Page> publisher = new SubmissionPublisher<>(ForkJoinPool.commonPool(), buffer);
+            publisher.subscribe(subscriber);
+            final CrawlerInfo info = new CrawlerInfo(depth, null, NO_SCORE, NO_LEVELS, page -> {
+                publisher.submit(page);
+                return publisher.hasSubscribers();
+            }, CrawlBudget.UNLIMITED);
+            new Thread(() -> {
+                try {
+                    info.start(url);
+                    publisher.close();
+                } catch (final RuntimeException e) {
+                    publisher.closeExceptionally(e);
+                }
+            }).start();
+        };
+    }
+
+    /**
+     * Returns publisher of pages of web site up to specified depth with default buffer.
+     *
+     * @param url   start <a href="http://tools.ietf.org/html/rfc3986">URL</a>.
+     * @param depth download depth.
+     * @return cold publisher of pages.
+     * @see #publish(String, int, int)
+     */
+    public Flow.Publisher<Page> publish(final String url, final int depth) {
+        return publish(url, depth, Flow.defaultBufferSize());
+    }
+
+    /**
+     * Opens crawl session with shared state: all its seeds share downloaded pages and host queues,
+     * so a page reachable from many seeds is downloaded once per depth it is needed with
+     * and {@code perHost} holds across all seeds.
+     *
+     * @param depth  download depth of every seed.
+     * @param budget limits of the whole session.
+     * @return new session.
+     */
+    public Session openSession(final int depth, final CrawlBudget budget) {
+        return new Session(depth, budget);
+    }
+
+    /**
+     * Opens crawl session without budget.
+     *
+     * @param depth download depth of every seed.
+     * @return new session.
+     * @see #openSession(int, CrawlBudget)
+     */
+    public Session openSession(final int depth) {
+        return openSession(depth, CrawlBudget.UNLIMITED);
+    }
+
+    /**
+     * Downloads web sites of all {@code urls} up to specified depth in one {@link Session session}.
+     *
+     * @param urls  start <a href="http://tools.ietf.org/html/rfc3986">URLs</a>.
+     * @param depth download depth.
+     * @return download result of every start URL.
+     * @see Session#add(String)
+     */
+    public Map<String, Result> download(final Collection<String> urls, final int depth) {
+        final Map<String, CompletableFuture<Result>> futures = new LinkedHashMap<>();
+        try (final Session session = openSession(depth)) {
+            for (final String url : urls) {
+                futures.computeIfAbsent(url, session::add);
+            }
+        }
+        final Map<String, Result> results = new LinkedHashMap<>();
+        futures.forEach((url, future) -> results.put(url, future.join()));
+        return results;
+    }
+
+    /**
+     * Crawl of many start URLs, called seeds, that may be added while it runs.
+     *
+     * <p>Result of every seed has the pages of a separate crawl of the seed, so results of seeds may intersect
+     * and do not depend on the order the pages are downloaded in.
+     * A page is downloaded again only when some seed reaches it with more depth left than before.
+     * Pages reached by every seed and links of downloaded pages are kept in memory until the session is closed.
+     * Downloads of all seeds are ordered by remaining depth, so pages near any seed go first.
+     */
+    public class Session implements AutoCloseable {
+        private final CrawlerInfo info;
+        private boolean closed = false;
+
+        private Session(final int depth, final CrawlBudget budget) {
+            info = new CrawlerInfo(depth, null, NO_SCORE, NO_LEVELS, NO_PAGES, budget, true);
+            info.begin();
+        }
+
+        /**
+         * Starts crawl of a seed.
+         *
+         * @param url start <a href="http://tools.ietf.org/html/rfc3986">URL</a>.
+         * @return future result of the seed, completed on a crawler thread when all its pages are processed,
+         * or failed if the crawl failed.
+         * @throws IllegalStateException if the session is closed.
+         */
+        public CompletableFuture<Result> add(final String url) {
+            // Crawl ends only after the session is closed
+            if (!info.hold()) {
+                throw new IllegalStateException("Session is closed");
+            }
+            try {
+                return info.add(url).result;
+            } finally {
+                info.release();
+            }
+        }
+
+        /**
+         * Waits for all seeds to complete, including seeds added while waiting.
+         * Seeds cannot be added after that.
+         */
+        @Override
+        public synchronized void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            info.release();
+            info.await();
+            info.end();
+        }
+    }
+
+    /**
+     * Returns statistics of this crawler.
+     *
+     * @return live statistics of all crawls, updated as pages are downloaded.
+     */
+    public CrawlerStats getStats() {
+        return stats;
+    }
+
+    /**
+     * Registers {@link #getStats() statistics} of this crawler in the platform MBean server
+     * as {@code ru.ifmo.rain.korobkov.crawler:type=WebCrawler,name=<name>}.
+     * The bean is unregistered on {@link #close()}.
+     *
+     * @param name name of this crawler.
+     * @throws JMException if registration failed.
+     */
+    public synchronized void registerMBean(final String name) throws JMException {
+        if (mBeanName != null) {
+            throw new IllegalStateException("Crawler is already registered as " + mBeanName);
+        }
+        final ObjectName objectName = new ObjectName(
+                getClass().getPackageName() + ":type=WebCrawler,name=" + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(stats, objectName);
+        mBeanName = objectName;
+    }
+
+    private synchronized void unregisterMBean() {
+        if (mBeanName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(mBeanName);
+            } catch (final JMException e) {
+                e.printStackTrace();
+            }
+            mBeanName = null;
+        }
+    }
+
+    /**
+     * Passes {@link CrawlerStats#snapshot() snapshot} of statistics to {@code listener}
+     * every {@code period} until the returned future is cancelled or the crawler is closed.
+     * The listener runs on the thread that also wakes up delayed hosts, so it should return quickly.
+     *
+     * @param period   period between snapshots.
+     * @param unit     unit of {@code period}.
+     * @param listener listener of snapshots.
+     * @return future that stops snapshots when cancelled.
+     */
+    public ScheduledFuture<?> monitor(final long period, final TimeUnit unit, final Consumer<CrawlerStats.Snapshot> listener) {
+        return timer.scheduleAtFixedRate(() -> listener.accept(stats.snapshot()), period, period, unit);
+    }
+
+    int activeCrawls() {
+        return crawls.size();
+    }
+
+    Map<String, Integer> hostQueueLengths() {
+        final Map<String, Integer> result = new HashMap<>();
+        for (final CrawlerInfo crawl : crawls) {
+            crawl.hosts.forEach((host, hostDownloader) -> {
+                final int queued = hostDownloader.queueLength();
+                if (queued > 0) {
+                    result.merge(host, queued, Integer::sum);
+                }
+            });
+        }
+        return result;
+    }
+
+    Map<String, Integer> hostConnections() {
+        final Map<String, Integer> result = new HashMap<>();
+        for (final CrawlerInfo crawl : crawls) {
+            crawl.hosts.forEach((host, hostDownloader) -> {
+                final int connections = hostDownloader.connections();
+                if (connections > 0) {
+                    result.merge(host, connections, Integer::sum);
+                }
+            });
+        }
+        return result;
     }
 
     private class CrawlerInfo {
         final Map<String, HostDownloader> hosts = new ConcurrentHashMap<>();
-        final Set<String> used = ConcurrentHashMap.newKeySet();
-        final Map<String, IOException> errors = new ConcurrentHashMap<>();
-        final Phaser phaser = new Phaser(1);
+        final VisitedSet used = visitedSets.get();
+        final Queue<Seed> seeds = new ConcurrentLinkedQueue<>();
+        /**
+         * Number of queued pages that are not finished yet, plus one while the owner of the crawl may add pages.
+         */
+        final AtomicLong outstanding = new AtomicLong(1);
+        final CountDownLatch completed = new CountDownLatch(1);
+        volatile RuntimeException failure = null;
+        final int depth;
+        final CrawlLog log;
+        final ToDoubleFunction<String> score;
+        final BiConsumer<Integer, Result> onLevel;
+        final Predicate<Page> onPage;
+        final AtomicInteger[] pendingAt;
+        final CrawlBudget budget;
+        final AtomicLong pagesLeft;
+        final AtomicLong bytesLeft;
+        /**
+         * Pages of a session shared by its seeds, {@code null} for a crawl of one seed.
+         */
+        final Map<String, Node> nodes;
+        final Pages shared = new Pages() {
+            @Override
+            public void downloaded(final String url, final int depth, final Collection<String> links) {
+                complete(url, depth, links == null ? Outcome.LEAF : new Outcome(List.copyOf(links), null));
+            }
+
+            @Override
+            public void failed(final String url, final int depth, final IOException e) {
+                publish(new Page(url, null, e));
+                complete(url, depth, new Outcome(List.of(), e));
+            }
 
-        public Result start(final String url, final int depth) {
-            downloadTask(url, depth);
-            phaser.arriveAndAwaitAdvance();
+            @Override
+            public void skipped(final String url, final int depth) {
+                complete(url, depth, Outcome.SKIPPED);
+            }
+        };
+        int completedLevels = 0;
+        volatile boolean stopped = false;
+        ScheduledFuture<?> deadline;
 
-            return new Result(
-                    used.stream().filter(s -> !errors.containsKey(s)).collect(Collectors.toList()),
-                    errors);
+        CrawlerInfo(final int depth, final CrawlLog log, final ToDoubleFunction<String> score,
+                    final BiConsumer<Integer, Result> onLevel, final Predicate<Page> onPage, final CrawlBudget budget) {
+            this(depth, log, score, onLevel, onPage, budget, false);
         }
 
-        private void downloadTask(final String url, final int depth) {
-            if (used.add(url)) {
+        CrawlerInfo(final int depth, final CrawlLog log, final ToDoubleFunction<String> score,
+                    final BiConsumer<Integer, Result> onLevel, final Predicate<Page> onPage, final CrawlBudget budget,
+                    final boolean session) {
+            this.depth = depth;
+            this.log = log;
+            this.score = score;
+            this.onLevel = onLevel;
+            this.onPage = onPage;
+            this.budget = budget;
+            pendingAt = new AtomicInteger[Math.max(1, depth)];
+            Arrays.setAll(pendingAt, i -> new AtomicInteger());
+            pagesLeft = new AtomicLong(budget.getMaxPages());
+            bytesLeft = new AtomicLong(budget.getMaxBytes());
+            nodes = session ? new ConcurrentHashMap<>() : null;
+        }
+
+        public Result start(final String url) {
+            begin();
+            final Seed seed = newSeed();
+            try {
                 try {
-                    final String host = URLUtils.getHost(url);
-                    final HostDownloader hostDownloader = hosts.computeIfAbsent(host,
-                            key -> new HostDownloader(perHost, downloadersPool));
-
-                    phaser.register();
-                    hostDownloader.add(() -> {
-                        try {
-                            final Document document = downloader.download(url);
-                            if (depth > 1) {
-                                extractTask(url, depth, document);
-                            }
-                        } catch (final IOException e) {
-                            errors.put(url, e);
-                        } finally {
-                            phaser.arrive();
+                    if (log == null || !resume(seed)) {
+                        queueAll(seed, List.of(url), depth);
+                    }
+                } catch (final RuntimeException e) {
+                    abort(e);
+                }
+                release();
+                await();
+            } finally {
+                end();
+            }
+            if (failure != null) {
+                throw failure;
+            }
+
+            return seed.toResult();
+        }
+
+        /**
+         * Counts {@code count} queued pages of {@code seed}.
+         */
+        private void hold(final Seed seed, final int count) {
+            seed.pending.addAndGet(count);
+            outstanding.addAndGet(count);
+        }
+
+        /**
+         * Counts one more unfinished unit of work, unless the crawl has completed.
+         *
+         * @return {@code false} if the crawl has completed.
+         */
+        private boolean hold() {
+            long current;
+            do {
+                current = outstanding.get();
+                if (current == 0) {
+                    return false;
+                }
+            } while (!outstanding.compareAndSet(current, current + 1));
+            return true;
+        }
+
+        private void release() {
+            if (outstanding.decrementAndGet() == 0) {
+                completed.countDown();
+            }
+        }
+
+        /**
+         * Waits for all queued pages to finish, uninterruptibly.
+         */
+        private void await() {
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    completed.await();
+                    break;
+                } catch (final InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        /**
+         * Fails the crawl after an unexpected exception: pages that are not finished yet may be lost,
+         * so the crawl stops, seeds fail and waiters are released at once.
+         */
+        private void abort(final RuntimeException e) {
+            synchronized (this) {
+                if (failure == null) {
+                    failure = e;
+                } else if (failure != e) {
+                    failure.addSuppressed(e);
+                }
+            }
+            stop();
+            seeds.forEach(seed -> seed.result.completeExceptionally(e));
+            completed.countDown();
+        }
+
+        private void begin() {
+            crawls.add(this);
+            if (budget.getMaxTimeNanos() != Long.MAX_VALUE) {
+                deadline = timer.schedule(this::stop, budget.getMaxTimeNanos(), TimeUnit.NANOSECONDS);
+            }
+        }
+
+        private void end() {
+            if (deadline != null) {
+                deadline.cancel(false);
+            }
+            crawls.remove(this);
+        }
+
+        private Seed newSeed() {
+            final Seed seed = new Seed();
+            seeds.add(seed);
+            return seed;
+        }
+
+        /**
+         * Reaches start page of a new seed of the session.
+         */
+        private Seed add(final String url) {
+            final Seed seed = newSeed();
+            // Seed is not complete until all its pages are reached
+            seed.pending.incrementAndGet();
+            try {
+                reachAll(seed, List.of(url), depth);
+            } catch (final RuntimeException e) {
+                abort(e);
+            }
+            if (failure != null) {
+                seed.result.completeExceptionally(failure);
+            } else {
+                seed.finished();
+            }
+            return seed;
+        }
+
+        /**
+         * Reaches {@code urls} from {@code seed} with {@code depth} remaining.
+         * Pages already downloaded with at least this depth are added to the seed at once.
+         * Others are added when downloaded, and are downloaded again if no seed reached them that deep before.
+         */
+        private void reachAll(final Seed seed, final Collection<String> urls, final int depth) {
+            if (stopped) {
+                return;
+            }
+            final List<String> fresh = new ArrayList<>();
+            for (final String url : urls) {
+                if (!seed.reached.add(url, depth)) {
+                    continue;
+                }
+                seed.pending.incrementAndGet();
+                final Node node = nodes.computeIfAbsent(url, key -> new Node());
+                final Outcome outcome;
+                synchronized (node) {
+                    if (node.outcome != null && node.depth >= depth) {
+                        outcome = node.outcome;
+                    } else {
+                        outcome = null;
+                        node.waiters.add(new Reach(seed, depth));
+                        if (node.depth < depth) {
+                            node.depth = depth;
+                            node.outcome = null;
+                            fresh.add(url);
                         }
-                    });
+                    }
+                }
+                if (outcome != null) {
+                    deliver(seed, url, depth, outcome);
+                    seed.finished();
+                }
+            }
+            if (fresh.isEmpty()) {
+                return;
+            }
+            pendingAt(depth).addAndGet(fresh.size());
+            outstanding.addAndGet(fresh.size());
+            scheduleAll(shared, fresh, depth);
+        }
+
+        /**
+         * Completes download of shared page with {@code depth} remaining and passes {@code outcome} to its waiters,
+         * unless the page has been reached with more depth since.
+         */
+        private void complete(final String url, final int depth, final Outcome outcome) {
+            final Node node = nodes.get(url);
+            List<Reach> waiters = List.of();
+            synchronized (node) {
+                if (node.depth == depth) {
+                    node.outcome = outcome;
+                    waiters = node.waiters;
+                    node.waiters = new ArrayList<>();
+                }
+            }
+            for (final Reach reach : waiters) {
+                deliver(reach.seed, url, reach.depth, outcome);
+                reach.seed.finished();
+            }
+            finished(depth);
+        }
+
+        /**
+         * Adds outcome of page reached from {@code seed} with {@code depth} remaining to the seed and reaches its links.
+         */
+        private void deliver(final Seed seed, final String url, final int depth, final Outcome outcome) {
+            if (outcome == Outcome.SKIPPED) {
+                return;
+            }
+            if (outcome.error != null) {
+                seed.failed(url, outcome.error);
+            } else {
+                seed.done(url);
+                if (depth > 1) {
+                    reachAll(seed, outcome.links, depth - 1);
+                }
+            }
+        }
+
+        /**
+         * @return pages of all seeds.
+         */
+        private Result result() {
+            final List<String> downloaded = new ArrayList<>();
+            final Map<String, IOException> errors = new HashMap<>();
+            for (final Seed seed : seeds) {
+                downloaded.addAll(seed.downloaded);
+                errors.putAll(seed.errors);
+            }
+            return new Result(downloaded, errors);
+        }
+
+        private AtomicInteger pendingAt(final int remaining) {
+            return pendingAt[Math.max(0, this.depth - remaining)];
+        }
+
+        /**
+         * Marks page with {@code remaining} depth as downloaded and its links as queued.
+         * Level is complete when all previous levels are complete and it has no pending pages,
+         * as pages of a level are only queued by pages of the previous one.
+         */
+        private void finished(final Seed seed, final int remaining) {
+            seed.finished();
+            finished(remaining);
+        }
+
+        private void finished(final int remaining) {
+            if (pendingAt(remaining).decrementAndGet() == 0) {
+                completeLevels();
+            }
+            release();
+        }
+
+        /**
+         * Reports completed levels. Snapshot of the result is only built if there is a listener of levels.
+         */
+        private synchronized void completeLevels() {
+            while (completedLevels < pendingAt.length && pendingAt[completedLevels].get() == 0) {
+                final int level = completedLevels++;
+                if (onLevel != NO_LEVELS) {
+                    onLevel.accept(level, result());
+                }
+            }
+        }
+
+        /**
+         * Restores state from the log and schedules pending downloads.
+         *
+         * @return {@code false} if the log is empty.
+         */
+        private boolean resume(final Seed seed) {
+            final Map<Integer, List<String>> byDepth = new HashMap<>();
+            final boolean resumed;
+            try {
+                resumed = log.replay(new CrawlLog.Listener() {
+                    @Override
+                    public void queued(final String url, final int remaining, final boolean pending) {
+                        used.add(url, remaining);
+                        if (pending) {
+                            byDepth.computeIfAbsent(remaining, key -> new ArrayList<>()).add(url);
+                        }
+                    }
+
+                    @Override
+                    public void done(final String url) {
+                        seed.done(url);
+                    }
+
+                    @Override
+                    public void failed(final String url, final String message) {
+                        seed.failed(url, new IOException(message));
+                    }
+                });
+            } catch (final IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            byDepth.forEach((remaining, urls) -> {
+                pendingAt(remaining).addAndGet(urls.size());
+                hold(seed, urls.size());
+                scheduleAll(pages(seed), urls, remaining);
+            });
+            completeLevels();
+            return resumed;
+        }
+
+        /**
+         * Queues {@code urls} that are not visited yet or are now reached with more {@code depth} remaining.
+         */
+        private void queueAll(final Seed seed, final Collection<String> urls, final int depth) {
+            if (stopped) {
+                return;
+            }
+            final List<String> fresh = new ArrayList<>(urls.size());
+            for (final String url : urls) {
+                if (used.add(url, depth)) {
+                    fresh.add(url);
+                }
+            }
+            if (fresh.isEmpty()) {
+                return;
+            }
+            if (log != null) {
+                log.queued(fresh, depth);
+            }
+            pendingAt(depth).addAndGet(fresh.size());
+            hold(seed, fresh.size());
+            scheduleAll(pages(seed), fresh, depth);
+        }
+
+        /**
+         * Passes page to the listener, which stops the crawl by returning {@code false}.
+         */
+        private void publish(final Page page) {
+            if (!onPage.test(page)) {
+                stop();
+            }
+        }
+
+        /**
+         * Stops starting new downloads. Queued downloads are dropped right away, bypassing rate limits.
+         */
+        private void stop() {
+            if (!stopped) {
+                stopped = true;
+                hosts.values().forEach(HostDownloader::drain);
+            }
+        }
+
+        /**
+         * Takes one page from the budget.
+         *
+         * @return {@code false} if the budget is exhausted.
+         */
+        private boolean takePage() {
+            if (pagesLeft.getAndDecrement() <= 0) {
+                stop();
+                return false;
+            }
+            return true;
+        }
+
+        /**
+         * Outcomes of downloads of the crawl of one seed.
+         */
+        private Pages pages(final Seed seed) {
+            return new Pages() {
+                @Override
+                public void downloaded(final String url, final int depth, final Collection<String> links) {
+                    if (links != null) {
+                        queueAll(seed, links, depth - 1);
+                    }
+                    seed.done(url);
+                    if (log != null) {
+                        log.done(url, depth);
+                    }
+                    finished(seed, depth);
+                }
+
+                @Override
+                public void failed(final String url, final int depth, final IOException e) {
+                    seed.failed(url, e);
+                    publish(new Page(url, null, e));
+                    if (log != null) {
+                        log.failed(url, depth, e);
+                    }
+                    finished(seed, depth);
+                }
+
+                @Override
+                public void skipped(final String url, final int depth) {
+                    finished(seed, depth);
+                }
+            };
+        }
+
+        /**
+         * Schedules downloads of queued {@code urls} in bulk: they are grouped by host once
+         * and added to the queue of every host under one lock.
+         */
+        private void scheduleAll(final Pages pages, final Collection<String> urls, final int depth) {
+            final Map<String, List<String>> byHost = new HashMap<>();
+            for (final String url : urls) {
+                try {
+                    byHost.computeIfAbsent(URLUtils.getHost(url), key -> new ArrayList<>()).add(url);
                 } catch (final MalformedURLException e) {
-                    //
+                    pages.downloaded(url, depth, null);
                 }
             }
+
+            byHost.forEach((host, hostUrls) -> {
+                final HostDownloader hostDownloader = hosts.computeIfAbsent(host,
+                        key -> new HostDownloader(perHost, bucket(hostRequestsPerSecond, 1), requests,
+                                downloadersPool, timer, downloadPermits, stats));
+                final List<Download> downloads = new ArrayList<>(hostUrls.size());
+                for (final String url : hostUrls) {
+                    downloads.add(new Download(depth, score.applyAsDouble(url), () -> download(pages, url, depth), hostDownloader));
+                }
+                hostDownloader.addAll(downloads);
+            });
         }
 
-        private void extractTask(final String url, final int depth, final Document document) {
-            phaser.register();
+        /**
+         * Downloads page and passes it to link extraction.
+         *
+         * @return latency of the network download in nanoseconds, {@link HostDownloader#FAILED}
+         * or {@link HostDownloader#NO_SAMPLE} if the page was skipped or served from {@link DocumentCache cache}.
+         */
+        private long download(final Pages pages, final String url, final int depth) {
+            try {
+                if (stopped || !takePage()) {
+                    pages.skipped(url, depth);
+                    return HostDownloader.NO_SAMPLE;
+                }
+                final long start = System.nanoTime();
+                final Document document;
+                try {
+                    document = downloader.download(url);
+                } catch (final IOException e) {
+                    stats.downloadFinished(false, System.nanoTime() - start);
+                    throw e;
+                }
+                final long latency = System.nanoTime() - start;
+                stats.downloadFinished(true, latency);
+                if (bytesLeft.addAndGet(-budget.size(document)) < 0) {
+                    stop();
+                }
+                publish(new Page(url, document, null));
+                if (depth > 1) {
+                    extractTask(pages, url, depth, document);
+                } else {
+                    pages.downloaded(url, depth, null);
+                }
+                return DocumentCache.isCached(document) ? HostDownloader.NO_SAMPLE : latency;
+            } catch (final IOException e) {
+                pages.failed(url, depth, e);
+                return HostDownloader.FAILED;
+            } catch (final RuntimeException e) {
+                abort(e);
+                return HostDownloader.FAILED;
+            }
+        }
+
+        /**
+         * Extracts links of page and queues them as one batch, deduplicated within the page.
+         */
+        private void extractTask(final Pages pages, final String url, final int depth, final Document document) {
+            final long submitted = System.nanoTime();
             extractorsPool.submit(() -> {
+                final long start = System.nanoTime();
+                stats.extractStarted(start - submitted);
                 try {
-                    document.extractLinks().forEach(newUrl -> downloadTask(newUrl, depth - 1));
+                    final List<String> links = document.extractLinks();
+                    stats.extractFinished(true, System.nanoTime() - start);
+                    pages.downloaded(url, depth, new LinkedHashSet<>(links));
                 } catch (final IOException e) {
-                    errors.put(url, e);
-                } finally {
-                    phaser.arrive();
+                    stats.extractFinished(false, System.nanoTime() - start);
+                    pages.failed(url, depth, e);
+                } catch (final RuntimeException e) {
+                    abort(e);
                 }
             });
         }
     }
 
+    /**
+     * Receiver of outcomes of page downloads.
+     */
+    private interface Pages {
+        /**
+         * @param links links of the page, or {@code null} if they are not extracted.
+         */
+        void downloaded(String url, int depth, Collection<String> links);
+
+        void failed(String url, int depth, IOException e);
+
+        /**
+         * Called for pages not downloaded as the crawl is stopped.
+         */
+        void skipped(String url, int depth);
+    }
+
+    /**
+     * Pages of one start URL. The seed is complete when none of its pages is pending.
+     * A page downloaded with one depth and failed with another counts as downloaded.
+     */
+    private static class Seed {
+        final Set<String> downloaded = ConcurrentHashMap.newKeySet();
+        final Map<String, IOException> errors = new ConcurrentHashMap<>();
+        /**
+         * Pages reached from the seed of a session with their greatest remaining depths.
+         */
+        final VisitedSet reached = VisitedSet.exact();
+        final AtomicInteger pending = new AtomicInteger();
+        final CompletableFuture<Result> result = new CompletableFuture<>();
+
+        void done(final String url) {
+            downloaded.add(url);
+            errors.remove(url);
+        }
+
+        void failed(final String url, final IOException e) {
+            errors.put(url, e);
+            if (downloaded.contains(url)) {
+                errors.remove(url);
+            }
+        }
+
+        void finished() {
+            if (pending.decrementAndGet() == 0) {
+                complete();
+            }
+        }
+
+        void complete() {
+            result.complete(toResult());
+        }
+
+        Result toResult() {
+            return new Result(new ArrayList<>(downloaded), new HashMap<>(errors));
+        }
+    }
+
+    /**
+     * Page shared by seeds of a session: the greatest depth it is downloaded with,
+     * outcome of that download once it is complete and seeds waiting for it.
+     */
+    private static class Node {
+        int depth = 0;
+        Outcome outcome = null;
+        List<Reach> waiters = new ArrayList<>();
+    }
+
+    /**
+     * Outcome of download of a shared page: its links or an error.
+     */
+    private static class Outcome {
+        static final Outcome LEAF = new Outcome(List.of(), null);
+        static final Outcome SKIPPED = new Outcome(List.of(), null);
+
+        final List<String> links;
+        final IOException error;
+
+        Outcome(final List<String> links, final IOException error) {
+            this.links = links;
+            this.error = error;
+        }
+    }
+
+    /**
+     * Page reached from {@code seed} with {@code depth} remaining.
+     */
+    private static class Reach {
+        final Seed seed;
+        final int depth;
+
+        Reach(final Seed seed, final int depth) {
+            this.seed = seed;
+            this.depth = depth;
+        }
+    }
+
+    /**
+     * Download of a page, ordered by decreasing remaining depth, then by decreasing score, then by creation.
+     */
+    private static class Download implements Runnable, Comparable<Download> {
+        private static final AtomicLong SEQUENCE = new AtomicLong();
+
+        private final int depth;
+        private final double score;
+        private final long sequence = SEQUENCE.getAndIncrement();
+        private final long queued = System.nanoTime();
+        private final LongSupplier body;
+        private final HostDownloader host;
+
+        /**
+         * @param body download returning network latency in nanoseconds,
+         *             {@link HostDownloader#FAILED} or {@link HostDownloader#NO_SAMPLE}.
+         */
+        Download(final int depth, final double score, final LongSupplier body, final HostDownloader host) {
+            this.depth = depth;
+            this.score = score;
+            this.body = body;
+            this.host = host;
+        }
+
+        @Override
+        public void run() {
+            host.run(this);
+        }
+
+        @Override
+        public int compareTo(final Download other) {
+            if (depth != other.depth) {
+                return Integer.compare(other.depth, depth);
+            }
+            if (score != other.score) {
+                return Double.compare(other.score, score);
+            }
+            return Long.compare(sequence, other.sequence);
+        }
+    }
+
+    /**
+     * Priority queue of downloads from one host. Every download also holds one of the permits shared by all hosts.
+     *
+     * <p>Number of concurrent downloads is adjusted AIMD-style: every successful download adds {@code 1 / window}
+     * to the window, a failure or latency more than {@link #LATENCY_FACTOR} times the best observed one halves it,
+     * at most once per window of completed downloads. The window stays in {@code [1, limit]}.
+     * Latency is that of the downloader alone and is sampled from successful network downloads only;
+     * the best latency drifts towards the average by {@link #BEST_LATENCY_DECAY} per sample,
+     * so a single unusually fast response is forgotten.
+     * Starts of downloads are limited by token buckets of the host and of the whole crawler;
+     * while either is empty, the host waits on the timer instead of a downloading thread.
+     */
     private static class HostDownloader {
+        private static final double LATENCY_FACTOR = 2;
+        private static final double LATENCY_WEIGHT = 0.25;
+        private static final double BEST_LATENCY_DECAY = 0.1;
+
+        /**
+         * Outcome of a failed download.
+         */
+        static final long FAILED = -1;
+        /**
+         * Outcome of a download that tells nothing about the host: skipped or served without network.
+         */
+        static final long NO_SAMPLE = -2;
+
         private final int limit;
-        private final Queue<Runnable> runnables = new ArrayDeque<>();
+        private final TokenBucket hostRequests;
+        private final TokenBucket requests;
+        private final Queue<Download> downloads = new PriorityQueue<>();
         private final ExecutorService service;
+        private final ScheduledExecutorService timer;
+        private final Semaphore permits;
+        private final CrawlerStats stats;
         private int connections = 0;
+        private double window;
+        private int sinceDecrease = 0;
+        private double bestLatency = Double.POSITIVE_INFINITY;
+        private double averageLatency = 0;
+        private boolean scheduled = false;
 
-        public HostDownloader(final int limit, final ExecutorService service) {
+        public HostDownloader(final int limit, final TokenBucket hostRequests, final TokenBucket requests,
+                              final ExecutorService service, final ScheduledExecutorService timer,
+                              final Semaphore permits, final CrawlerStats stats) {
             this.limit = limit;
+            this.hostRequests = hostRequests;
+            this.requests = requests;
             this.service = service;
+            this.timer = timer;
+            this.permits = permits;
+            this.stats = stats;
+            this.window = limit;
         }
 
-        public synchronized void add(final Runnable r) {
-            runnables.add(r);
+        /**
+         * Adds downloads of this host to the queue.
+         *
+         * @param batch downloads created for this host.
+         */
+        public synchronized void addAll(final Collection<Download> batch) {
+            downloads.addAll(batch);
             tryRun();
         }
 
         private synchronized void tryRun() {
-            if (!runnables.isEmpty() && connections < limit) {
-                final Runnable runnable = runnables.poll();
+            while (!downloads.isEmpty() && connections < (int) window && !scheduled) {
+                long wait = hostRequests.delay();
+                if (wait == 0) {
+                    wait = requests.tryAcquire();
+                }
+                if (wait > 0) {
+                    scheduled = true;
+                    timer.schedule(this::wakeUp, wait, TimeUnit.NANOSECONDS);
+                    return;
+                }
+                hostRequests.tryAcquire();
                 connections++;
-                service.submit(() -> {
-                    try {
-                        runnable.run();
-                    } finally {
-                        release();
-                    }
-                });
+                service.execute(downloads.poll());
+            }
+        }
+
+        private void run(final Download download) {
+            permits.acquireUninterruptibly();
+            final long start = System.nanoTime();
+            stats.downloadStarted(start - download.queued);
+            long outcome = FAILED;
+            try {
+                outcome = download.body.getAsLong();
+            } finally {
+                permits.release();
+                release(outcome);
+            }
+        }
+
+        /**
+         * Runs bodies of all queued downloads on the calling thread, ignoring limits.
+         * Used to drop them once the crawl is stopped.
+         */
+        void drain() {
+            final List<Download> drained;
+            synchronized (this) {
+                drained = new ArrayList<>(downloads);
+                downloads.clear();
             }
+            drained.forEach(download -> download.body.getAsLong());
         }
 
-        private synchronized void release() {
+        synchronized int queueLength() {
+            return downloads.size();
+        }
+
+        synchronized int connections() {
+            return connections;
+        }
+
+        private synchronized void wakeUp() {
+            scheduled = false;
+            tryRun();
+        }
+
+        private synchronized void release(final long outcome) {
             connections--;
+            if (outcome == NO_SAMPLE) {
+                tryRun();
+                return;
+            }
+            sinceDecrease++;
+            final boolean succeeded = outcome != FAILED;
+            if (succeeded) {
+                averageLatency = averageLatency == 0 ? outcome : averageLatency + LATENCY_WEIGHT * (outcome - averageLatency);
+                bestLatency = bestLatency == Double.POSITIVE_INFINITY ? outcome
+                        : Math.min(outcome, bestLatency + BEST_LATENCY_DECAY * (averageLatency - bestLatency));
+            }
+            if (succeeded && averageLatency <= LATENCY_FACTOR * bestLatency) {
+                window = Math.min(limit, window + 1 / window);
+            } else if (sinceDecrease >= window) {
+                window = Math.max(1, window / 2);
+                sinceDecrease = 0;
+            }
             tryRun();
         }
     }
@@ -134,6 +1288,8 @@ public class WebCrawler implements Crawler {
      */
     @Override
     public void close() {
+        unregisterMBean();
+        timer.shutdownNow();
         downloadersPool.shutdown();
         extractorsPool.shutdown();
 
@@ -0,0 +1,340 @@
+package ru.ifmo.rain.korobkov.crawler;
+
+import info.kgeorgiy.java.advanced.crawler.Document;
+import info.kgeorgiy.java.advanced.crawler.Downloader;
+import info.kgeorgiy.java.advanced.crawler.Result;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntPredicate;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("WebCrawler Test")
+public class WebCrawlerTest {
+    private static final int LATENCY_MILLIS = 20;
+
+    /**
+     * Site of one host: the start page links to {@code pages} other pages.
+     * Pages matching {@code instantFailures} fail at once, others are downloaded in {@link #LATENCY_MILLIS}.
+     * Records number of running downloads at start of every download.
+     */
+    private static class StarSite implements Downloader {
+        private final int pages;
+        private final IntPredicate instantFailures;
+        private final AtomicInteger active = new AtomicInteger();
+        private final List<Integer> concurrency = Collections.synchronizedList(new ArrayList<>());
+
+        StarSite(final int pages, final IntPredicate instantFailures) {
+            this.pages = pages;
+            this.instantFailures = instantFailures;
+        }
+
+        static String url(final int page) {
+            return "http://star.example.com/" + page;
+        }
+
+        @Override
+        public Document download(final String url) throws IOException {
+            final int page = Integer.parseInt(url.substring(url.lastIndexOf('/') + 1));
+            if (instantFailures.test(page)) {
+                throw new IOException("Not found: " + url);
+            }
+            concurrency.add(active.incrementAndGet());
+            try {
+                Thread.sleep(LATENCY_MILLIS);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException(e);
+            } finally {
+                active.decrementAndGet();
+            }
+            return () -> page == 0
+                    ? IntStream.rangeClosed(1, pages).mapToObj(StarSite::url).collect(Collectors.toList())
+                    : List.of();
+        }
+
+        double lateConcurrency() {
+            synchronized (concurrency) {
+                return concurrency.subList(concurrency.size() / 2, concurrency.size()).stream()
+                        .mapToInt(Integer::intValue).average().orElse(0);
+            }
+        }
+    }
+
+    /**
+     * Sites of numbered seeds: start page of every seed links to {@code links} pages without links,
+     * spread over {@link #HOSTS} hosts. Downloads are instant.
+     */
+    private static class SeedSites implements Downloader {
+        private static final int HOSTS = 50;
+        private final int links;
+
+        SeedSites(final int links) {
+            this.links = links;
+        }
+
+        static String seed(final int seed) {
+            return "http://h" + seed % HOSTS + ".example.com/s" + seed;
+        }
+
+        @Override
+        public Document download(final String url) {
+            if (url.contains("/p")) {
+                return List::of;
+            }
+            final int seed = Integer.parseInt(url.substring(url.lastIndexOf("/s") + 2));
+            return () -> IntStream.range(0, links)
+                    .mapToObj(i -> "http://h" + (seed + i) % HOSTS + ".example.com/s" + seed + "/p" + i)
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Site of pages on separate hosts with given links.
+     * Pages in {@code slow} are downloaded in {@link #LATENCY_MILLIS}, others in random time up to a millisecond.
+     */
+    private static class GraphSite implements Downloader {
+        private final Map<String, List<String>> links;
+        private final Set<String> slow;
+
+        GraphSite(final Map<String, List<String>> links, final Set<String> slow) {
+            this.links = links;
+            this.slow = slow;
+        }
+
+        static String url(final String page) {
+            return "http://" + page + ".example.com/";
+        }
+
+        @Override
+        public Document download(final String url) throws IOException {
+            try {
+                if (slow.contains(url)) {
+                    Thread.sleep(LATENCY_MILLIS);
+                } else {
+                    TimeUnit.MICROSECONDS.sleep(ThreadLocalRandom.current().nextInt(1000));
+                }
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException(e);
+            }
+            return () -> links.getOrDefault(url, List.of());
+        }
+    }
+
+    private static Set<String> downloaded(final Result result) {
+        return new HashSet<>(result.getDownloaded());
+    }
+
+    @Test
+    @DisplayName("Session of more than 65535 pages completes")
+    public void largeSession() {
+        final int seeds = 700;
+        final int links = 100;
+        final List<String> urls = IntStream.range(0, seeds).mapToObj(SeedSites::seed).collect(Collectors.toList());
+        try (final WebCrawler crawler = new WebCrawler(new SeedSites(links), 8, 4, 100)) {
+            final Map<String, Result> results = assertTimeoutPreemptively(Duration.ofSeconds(60),
+                    () -> crawler.download(urls, 2));
+            assertEquals(urls, new ArrayList<>(results.keySet()));
+            for (final Result result : results.values()) {
+                assertEquals(links + 1, result.getDownloaded().size());
+                assertTrue(result.getErrors().isEmpty());
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Crawl of more than 65535 pages with fingerprints completes")
+    public void largeCrawl() {
+        final int links = 100_000;
+        try (final WebCrawler crawler = new WebCrawler(new SeedSites(links), 8, 4, links, 0, VisitedSet::fingerprints)) {
+            final Result result = assertTimeoutPreemptively(Duration.ofSeconds(60),
+                    () -> crawler.download(SeedSites.seed(0), 2));
+            assertEquals(links + 1, result.getDownloaded().size());
+            assertTrue(result.getErrors().isEmpty());
+        }
+    }
+
+    @Test
+    @DisplayName("Unexpected downloader exception fails the crawl")
+    public void unexpectedException() {
+        final Downloader broken = url -> {
+            throw new UnsupportedOperationException(url);
+        };
+        try (final WebCrawler crawler = new WebCrawler(broken, 2, 2, 2)) {
+            assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+                assertThrows(UnsupportedOperationException.class, () -> crawler.download(SeedSites.seed(0), 2));
+                try (final WebCrawler.Session session = crawler.openSession(2)) {
+                    final CompletableFuture<Result> future = session.add(SeedSites.seed(1));
+                    session.close();
+                    assertTrue(future.isCompletedExceptionally());
+                }
+            });
+        }
+    }
+
+    @Test
+    @DisplayName("Crawl resumes from a log cut at any point")
+    public void resume(@TempDir final Path dir) throws IOException {
+        final Path log = dir.resolve("crawl.log");
+        final AtomicInteger downloads = new AtomicInteger();
+        final Downloader downloader = url -> {
+            downloads.incrementAndGet();
+            return new SeedSites(200).download(url);
+        };
+        try (final WebCrawler crawler = new WebCrawler(downloader, 4, 2, 10)) {
+            final Result expected = crawler.download(SeedSites.seed(0), 2, log);
+            assertEquals(201, expected.getDownloaded().size());
+            final byte[] bytes = Files.readAllBytes(log);
+            for (final int length : new int[]{bytes.length * 2 / 3, bytes.length * 3 / 4 + 1, bytes.length - 1}) {
+                Files.write(log, bytes);
+                try (final FileChannel channel = FileChannel.open(log, StandardOpenOption.WRITE)) {
+                    channel.truncate(length);
+                }
+                downloads.set(0);
+                final Result result = crawler.download(SeedSites.seed(0), 2, log);
+                assertEquals(new HashSet<>(expected.getDownloaded()), new HashSet<>(result.getDownloaded()));
+                assertTrue(0 < downloads.get() && downloads.get() < 201, "Downloads " + downloads.get());
+            }
+            downloads.set(0);
+            assertEquals(201, crawler.download(SeedSites.seed(0), 2, log).getDownloaded().size());
+            assertEquals(0, downloads.get());
+        }
+    }
+
+    @Test
+    @DisplayName("URLs longer than 64K bytes are logged")
+    public void longUrl(@TempDir final Path dir) throws IOException {
+        final Path log = dir.resolve("crawl.log");
+        final String start = "http://long.example.com/";
+        final String longUrl = start + "a".repeat(100_000);
+        final AtomicInteger downloads = new AtomicInteger();
+        final Downloader downloader = url -> {
+            downloads.incrementAndGet();
+            return () -> url.equals(start) ? List.of(longUrl) : List.of();
+        };
+        try (final WebCrawler crawler = new WebCrawler(downloader, 2, 2, 2)) {
+            assertEquals(Set.of(start, longUrl), new HashSet<>(crawler.download(start, 2, log).getDownloaded()));
+            downloads.set(0);
+            assertEquals(Set.of(start, longUrl), new HashSet<>(crawler.download(start, 2, log).getDownloaded()));
+            assertEquals(0, downloads.get());
+        }
+    }
+
+    @Test
+    @DisplayName("Cache files keep URLs longer than 64K bytes")
+    public void longUrlCache(@TempDir final Path dir) throws IOException {
+        final String url = "http://long.example.com/" + "a".repeat(100_000);
+        final List<String> links = List.of(url + "/b", "http://long.example.com/c");
+        final AtomicInteger downloads = new AtomicInteger();
+        final Downloader downloader = page -> {
+            downloads.incrementAndGet();
+            return () -> links;
+        };
+        new DocumentCache(downloader, dir, 0, 1 << 20, 1, TimeUnit.HOURS).download(url);
+        final DocumentCache cache = new DocumentCache(downloader, dir, 0, 1 << 20, 1, TimeUnit.HOURS);
+        assertEquals(links, cache.download(url).extractLinks());
+        assertEquals(1, downloads.get());
+        assertEquals(1, cache.getHits());
+        try (final Stream<Path> files = Files.list(dir)) {
+            assertEquals(1, files.count());
+        }
+    }
+
+    @Test
+    @DisplayName("Instant failures do not collapse host window")
+    public void instantFailures() {
+        final StarSite site = new StarSite(100, page -> 1 <= page && page <= 3);
+        try (final WebCrawler crawler = new WebCrawler(site, 8, 2, 8)) {
+            final Result result = assertTimeoutPreemptively(Duration.ofSeconds(30),
+                    () -> crawler.download(StarSite.url(0), 2));
+            assertEquals(98, result.getDownloaded().size());
+            assertEquals(3, result.getErrors().size());
+        }
+        assertTrue(site.lateConcurrency() >= 4, "Mean concurrency " + site.lateConcurrency());
+    }
+
+    @Test
+    @DisplayName("Cache hits do not collapse host window")
+    public void cacheHits() throws IOException {
+        final StarSite site = new StarSite(100, page -> false);
+        final DocumentCache cache = new DocumentCache(site, 1000, 1, TimeUnit.HOURS);
+        for (int page = 1; page <= 3; page++) {
+            cache.download(StarSite.url(page));
+        }
+        site.concurrency.clear();
+        try (final WebCrawler crawler = new WebCrawler(cache, 8, 2, 8)) {
+            final Result result = assertTimeoutPreemptively(Duration.ofSeconds(30),
+                    () -> crawler.download(StarSite.url(0), 2));
+            assertEquals(101, result.getDownloaded().size());
+        }
+        assertEquals(3, cache.getHits());
+        assertTrue(site.lateConcurrency() >= 4, "Mean concurrency " + site.lateConcurrency());
+    }
+
+    @Test
+    @DisplayName("Page reached again with more depth left is expanded")
+    public void deeperPath() {
+        final String start = GraphSite.url("s");
+        final String slow = GraphSite.url("x");
+        final String shared = GraphSite.url("p");
+        final String deepest = GraphSite.url("c");
+        final GraphSite site = new GraphSite(Map.of(
+                start, List.of(slow, GraphSite.url("y")),
+                slow, List.of(shared),
+                GraphSite.url("y"), List.of(GraphSite.url("z")),
+                GraphSite.url("z"), List.of(shared),
+                shared, List.of(deepest)
+        ), Set.of(slow));
+        final List<Supplier<VisitedSet>> visitedSets = List.of(VisitedSet::exact, VisitedSet::fingerprints);
+        for (final Supplier<VisitedSet> visitedSet : visitedSets) {
+            try (final WebCrawler crawler = new WebCrawler(site, 8, 4, 8, 0, visitedSet)) {
+                final Result result = assertTimeoutPreemptively(Duration.ofSeconds(10),
+                        () -> crawler.download(start, 4));
+                assertEquals(6, downloaded(result).size());
+                assertTrue(result.getDownloaded().contains(deepest));
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Results of overlapping seeds match separate crawls")
+    public void overlappingSeeds() {
+        final List<String> chain = Stream.of("a", "p", "q", "r").map(GraphSite::url).collect(Collectors.toList());
+        final Map<String, List<String>> links = new HashMap<>();
+        for (int i = 0; i + 1 < chain.size(); i++) {
+            links.put(chain.get(i), List.of(chain.get(i + 1)));
+        }
+        final GraphSite site = new GraphSite(links, Set.of());
+        try (final WebCrawler crawler = new WebCrawler(site, 8, 4, 8)) {
+            final Map<String, Set<String>> expected = new HashMap<>();
+            for (final String seed : chain) {
+                expected.put(seed, downloaded(crawler.download(seed, 2)));
+            }
+            assertEquals(Set.of(chain.get(1), chain.get(2)), expected.get(chain.get(1)));
+            for (int run = 0; run < 200; run++) {
+                final Map<String, Result> results = assertTimeoutPreemptively(Duration.ofSeconds(10),
+                        () -> crawler.download(chain, 2));
+                for (final String seed : chain) {
+                    assertEquals(expected.get(seed), downloaded(results.get(seed)), "Seed " + seed);
+                }
+            }
+        }
+    }
+}